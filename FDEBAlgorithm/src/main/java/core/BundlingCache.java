@@ -0,0 +1,257 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk cache of bundled subdivision points, stored as {@link GraphSnapshot} files in a local directory.
+ *
+ * Entries are addressed by a SHA-256 hash of everything the result depends on: geometry of the edges and all
+ * parameters of the algorithm, see {@link KeyBuilder}. Total size of entries is bounded; when it is exceeded,
+ * least recently used entries (by modification time, which is updated on every hit) are deleted.
+ *
+ * The cache also stores {@link CompatibilityScoreStore} of graphs, so that runs differing only in the compatibility
+ * threshold do not score pairs of edges again. The last used store is kept in memory as well.
+ */
+public class BundlingCache {
+
+    private final Path directory;
+    private final long maxSize;
+
+    // last used store of compatibility scores and its key
+    private String scoreStoreKey;
+    private CompatibilityScoreStore scoreStore;
+
+    /**
+     * Creates cache in given directory, which is created if it does not exist.
+     *
+     * @param directory
+     * @param maxSize maximal total size of cached entries in bytes
+     */
+    public BundlingCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    private Path entry(String key) {
+        return directory.resolve(key + GraphSnapshot.EXTENSION);
+    }
+
+    private Path scoreStoreEntry(String key) {
+        return directory.resolve(key + CompatibilityScoreStore.EXTENSION);
+    }
+
+    /**
+     * Returns cached subdivision points for given key, or {@code null} if there are none.
+     *
+     * @param key
+     * @param edgesCount number of edges the result must have
+     * @return
+     * @throws IOException
+     */
+    public synchronized SubdivisionBuffer get(String key, int edgesCount) throws IOException {
+        Path entry = entry(key);
+        if (!Files.exists(entry))
+            return null;
+
+        GraphSnapshot snapshot = GraphSnapshot.map(entry);
+        if (!snapshot.hasSubdivisionPoints() || snapshot.getEdgesCount() != edgesCount)
+            return null;
+
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        return snapshot.toSubdivisionBuffer();
+    }
+
+    /**
+     * Stores subdivision points of given graph under given key and evicts least recently used entries
+     * if the cache grows over its size.
+     *
+     * @param key
+     * @param nodes
+     * @param edges
+     * @param subdivisionPoints
+     * @throws IOException
+     */
+    public synchronized void put(String key, Node[] nodes, Edge[] edges, SubdivisionBuffer subdivisionPoints)
+            throws IOException {
+        put(entry(key), temporary -> GraphSnapshot.write(temporary, nodes, edges, subdivisionPoints));
+    }
+
+    /**
+     * Returns store of compatibility scores of given edges with given floor. The store is taken from memory if it
+     * was the last one used, otherwise read from the cache, otherwise built and stored into the cache.
+     *
+     * @param edges
+     * @param floor
+     * @return
+     * @throws IOException
+     */
+    public CompatibilityScoreStore getScoreStore(Edge[] edges, double floor) throws IOException {
+        return getScoreStore(edges, floor, () -> {
+        });
+    }
+
+    /**
+     * Returns store of compatibility scores as {@link #getScoreStore(Edge[], double)} does, building it with given
+     * cancellation
+     *
+     * @param edges
+     * @param floor
+     * @param cancellation called periodically while the store is built, throws
+     *                     {@link java.util.concurrent.CancellationException} to stop building it
+     * @return
+     * @throws IOException
+     */
+    public synchronized CompatibilityScoreStore getScoreStore(Edge[] edges, double floor, Runnable cancellation)
+            throws IOException {
+        String key = CompatibilityScoreStore.getKey(edges, floor);
+        if (key.equals(scoreStoreKey))
+            return scoreStore;
+
+        Path entry = scoreStoreEntry(key);
+        CompatibilityScoreStore store;
+        if (Files.exists(entry)) {
+            store = CompatibilityScoreStore.read(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } else {
+            store = CompatibilityScoreStore.build(edges, floor, cancellation);
+            put(entry, store::write);
+        }
+
+        scoreStoreKey = key;
+        scoreStore = store;
+        return store;
+    }
+
+    private interface EntryWriter {
+
+        void write(Path path) throws IOException;
+    }
+
+    private void put(Path entry, EntryWriter writer) throws IOException {
+        Files.createDirectories(directory);
+
+        // write to temporary file first, so that readers never see a partially written entry
+        Path temporary = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        try {
+            writer.write(temporary);
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes least recently used entries until total size of entries is within the limit
+     *
+     * @throws IOException
+     */
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long totalSize = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                "*{" + GraphSnapshot.EXTENSION + "," + CompatibilityScoreStore.EXTENSION + "}")) {
+            for (Path entry : stream) {
+                entries.add(entry);
+                totalSize += Files.size(entry);
+            }
+        }
+        if (totalSize <= maxSize)
+            return;
+
+        try {
+            entries.sort((a, b) -> {
+                try {
+                    return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        for (Path entry : entries) {
+            if (totalSize <= maxSize)
+                break;
+            totalSize -= Files.size(entry);
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    /**
+     * Builds cache key as hexadecimal SHA-256 hash of added values
+     */
+    public static class KeyBuilder {
+
+        private final MessageDigest digest;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8);
+
+        public KeyBuilder() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        public KeyBuilder add(double value) {
+            buffer.clear();
+            digest.update(buffer.putDouble(value).array());
+            return this;
+        }
+
+        public KeyBuilder add(long value) {
+            buffer.clear();
+            digest.update(buffer.putLong(value).array());
+            return this;
+        }
+
+        public KeyBuilder add(String value) {
+            add(value.length());
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        /**
+         * Adds coordinates of endpoints of all edges, in their order
+         *
+         * @param edges
+         * @return
+         */
+        public KeyBuilder add(Edge[] edges) {
+            add(edges.length);
+            for (Edge edge : edges) {
+                add(edge.getFrom().getPosition().getX());
+                add(edge.getFrom().getPosition().getY());
+                add(edge.getTo().getPosition().getX());
+                add(edge.getTo().getPosition().getY());
+            }
+            return this;
+        }
+
+        public String build() {
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        }
+    }
+}
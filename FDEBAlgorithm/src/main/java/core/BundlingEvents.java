@@ -0,0 +1,90 @@
+package core;
+
+/**
+ * Records phases of the bundling pipeline, e.g. as Java Flight Recorder events, see
+ * {@link BundlingMonitoring#events()}.
+ *
+ * A phase is started by {@link #begin(Phase)}, which returns an event recorded by the method ending the phase of the
+ * same kind; the event is {@code null} if nothing is recorded. All methods do nothing by default.
+ */
+public interface BundlingEvents {
+
+    enum Phase {
+        PARSE, PROJECTION, COMPATIBILITY, CYCLE, ITERATION, RESAMPLING
+    }
+
+    /**
+     * Records nothing
+     */
+    BundlingEvents NONE = new BundlingEvents() {
+    };
+
+    default Object begin(Phase phase) {
+        return null;
+    }
+
+    /**
+     * Ends parsing of input file or its snapshot
+     *
+     * @param event
+     * @param file
+     * @param nodesCount
+     * @param edgesCount
+     */
+    default void endParse(Object event, String file, int nodesCount, int edgesCount) {
+    }
+
+    /**
+     * Ends conversion of latitude and longitude of nodes into canvas coordinates
+     *
+     * @param event
+     * @param nodesCount
+     */
+    default void endProjection(Object event, int nodesCount) {
+    }
+
+    /**
+     * Ends determination of compatible edges
+     *
+     * @param event
+     * @param edgesCount
+     * @param pairsCount number of compatible pairs
+     */
+    default void endCompatibility(Object event, int edgesCount, long pairsCount) {
+    }
+
+    /**
+     * Ends cycle, including resampling at its end
+     *
+     * @param event
+     * @param cycle
+     * @param iterationsCount number of performed iterations
+     * @param subdivisionPointsCount subdivision points per edge during the cycle
+     */
+    default void endCycle(Object event, int cycle, int iterationsCount, int subdivisionPointsCount) {
+    }
+
+    /**
+     * Ends iteration
+     *
+     * @param event
+     * @param cycle
+     * @param iteration
+     * @param forceEvaluationsCount number of spring and electrostatic forces calculated
+     * @param maxDisplacement
+     * @param meanDisplacement
+     */
+    default void endIteration(Object event, int cycle, int iteration, long forceEvaluationsCount,
+                              double maxDisplacement, double meanDisplacement) {
+    }
+
+    /**
+     * Ends resampling of subdivision points of all edges
+     *
+     * @param event
+     * @param subdivisionPointsCount new number of subdivision points per edge
+     * @param pointsCount new number of stored points
+     */
+    default void endResampling(Object event, int subdivisionPointsCount, long pointsCount) {
+    }
+}
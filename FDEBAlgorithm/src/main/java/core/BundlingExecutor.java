@@ -0,0 +1,111 @@
+package core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs {@link ForceDirectedEdgeBundling} instances as cancellable {@link BundlingJob}s, on virtual threads if the
+ * runtime provides them (Java 21 and newer), otherwise on daemon threads.
+ *
+ * Only the latest submitted job is meant to matter, as when parameters are changed in the GUI: submitting a job
+ * cancels the current one, unless both have the same key, in which case the current job is returned instead.
+ * A new job is started only after the engine of the cancelled one has stopped, as both may share edges and
+ * {@link BundlingCache} files.
+ */
+public class BundlingExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(BundlingExecutor.class.getName());
+
+    private final ExecutorService executor = createExecutorService();
+    private BundlingJob currentJob;
+
+    private static ExecutorService createExecutorService() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadsCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "fdeb-job-" + threadsCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Submits run of given instance without time limit
+     *
+     * @param fdeb
+     * @return
+     */
+    public BundlingJob submit(ForceDirectedEdgeBundling fdeb) {
+        return submit(fdeb, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits run of given instance, which times out after given duration. The current job is cancelled, unless
+     * it has the same key as the new one, see {@link ForceDirectedEdgeBundling#getCacheKey()}; then it is returned
+     * and given instance is not run. Waits until the engine of the cancelled job stops.
+     *
+     * @param fdeb
+     * @param timeout 0 for no limit
+     * @param unit
+     * @return
+     */
+    public synchronized BundlingJob submit(ForceDirectedEdgeBundling fdeb, long timeout, TimeUnit unit) {
+        final String key = fdeb.getCacheKey();
+        if (currentJob != null && !currentJob.isStopped()) {
+            if (!currentJob.isCancelled() && currentJob.getKey().equals(key))
+                return currentJob;
+
+            if (!currentJob.isDone()) {
+                LOGGER.log(Level.INFO, String.format("Cancelling job %s pre-empted by job %s \n",
+                        currentJob.getKey(), key));
+                currentJob.cancel(false);
+            }
+            awaitStopped(currentJob);
+        }
+
+        fdeb.setTimeout(timeout, unit);
+        currentJob = new BundlingJob(fdeb, key);
+        executor.execute(currentJob);
+        return currentJob;
+    }
+
+    private static void awaitStopped(BundlingJob job) {
+        boolean interrupted = false;
+        while (!job.isStopped()) {
+            try {
+                job.awaitStopped();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns the last submitted job or {@code null}
+     *
+     * @return
+     */
+    public synchronized BundlingJob getCurrentJob() {
+        return currentJob;
+    }
+
+    /**
+     * Cancels the current job and stops accepting new ones
+     */
+    public synchronized void shutdown() {
+        if (currentJob != null)
+            currentJob.cancel(false);
+        executor.shutdown();
+    }
+}
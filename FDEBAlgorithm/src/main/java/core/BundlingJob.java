@@ -0,0 +1,129 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Run of {@link ForceDirectedEdgeBundling} submitted to {@link BundlingExecutor}.
+ *
+ * The job completes with subdivision points of the result. If it is cancelled, {@link #get()} throws
+ * {@link CancellationException}; if it times out, {@link #get()} throws {@link java.util.concurrent.ExecutionException}
+ * caused by {@link CancellationException}. Progress is the fraction of planned iterations performed, iterations
+ * skipped by converged cycles count as performed.
+ *
+ * A cancelled job is done at once, but its engine keeps running until its next check; {@link #isStopped()} tells
+ * whether the engine, and so the edges and the cache it uses, are free again.
+ */
+public class BundlingJob extends FutureTask<SubdivisionBuffer> implements Observer {
+
+    private final ForceDirectedEdgeBundling fdeb;
+    private final String key;
+    private final int plannedIterationsCount;
+    // counted down when the job has run, even if it was cancelled before it started
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private volatile int iteration;
+    private volatile int cycle;
+    // iterations of finished cycles, including skipped ones
+    private volatile int finishedIterationsCount;
+
+    BundlingJob(ForceDirectedEdgeBundling fdeb, String key) {
+        super(() -> {
+            fdeb.run();
+            return fdeb.getSubdivisionPoints();
+        });
+        this.fdeb = fdeb;
+        this.key = key;
+        this.plannedIterationsCount = fdeb.getPlannedIterationsCount();
+        fdeb.registerObserver(this);
+    }
+
+    /**
+     * Returns key of parameters and edges of the job, see {@link ForceDirectedEdgeBundling#getCacheKey()}
+     *
+     * @return
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public int getCycle() {
+        return cycle;
+    }
+
+    /**
+     * Returns progress of the job in [0, 1]
+     *
+     * @return
+     */
+    public double getProgress() {
+        if (isDone() || plannedIterationsCount == 0)
+            return 1;
+        return Math.min(1, (double) (finishedIterationsCount + iteration) / plannedIterationsCount);
+    }
+
+    @Override
+    public void run() {
+        try {
+            super.run();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the job has run and its engine has stopped, unlike {@link #isDone()}, which is
+     * {@code true} as soon as the job is cancelled
+     *
+     * @return
+     */
+    public boolean isStopped() {
+        return stopped.getCount() == 0;
+    }
+
+    /**
+     * Waits until the job has run and its engine has stopped
+     *
+     * @throws InterruptedException
+     */
+    public void awaitStopped() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Cancels the job. A running engine stops at its next check, see {@link ForceDirectedEdgeBundling#cancel()};
+     * its thread is never interrupted, so that files of the cache are not closed by the interrupt.
+     *
+     * @param mayInterruptIfRunning ignored
+     * @return
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        fdeb.cancel();
+        return super.cancel(false);
+    }
+
+    @Override
+    public void updateProcessInfo(int iteration, int cycle) {
+        this.iteration = iteration;
+        this.cycle = cycle;
+    }
+
+    @Override
+    public void cycleFinished(int cycle, int iterationsCount, int savedIterationsCount) {
+        finishedIterationsCount += iterationsCount + savedIterationsCount;
+        iteration = 0;
+    }
+
+    @Override
+    public void finished(Node[] nodes, Edge[] edges) {
+    }
+}
@@ -0,0 +1,144 @@
+package core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of bundling runs of this JVM, updated by {@link ForceDirectedEdgeBundling} and {@link IOParser}. The only
+ * instance is registered on the platform MBean server by {@link BundlingMonitoring#metrics()}.
+ */
+public class BundlingMetrics implements BundlingMetricsMXBean {
+
+    private static final String IDLE = "IDLE";
+
+    private volatile String phase = IDLE;
+    private volatile int cycle;
+    private volatile int iteration;
+    private volatile int subdivisionPointsCount;
+    private volatile long compatiblePairsCount;
+    private volatile double forceEvaluationsPerSecond;
+    private volatile long subdivisionDataBytes;
+
+    private final LongAdder forceEvaluationsCount = new LongAdder();
+    // nanoseconds spent in each phase, indexed by ordinal
+    private final LongAdder[] phaseTimes = new LongAdder[BundlingEvents.Phase.values().length];
+
+    BundlingMetrics() {
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param phase
+     * @return start of the phase, to be passed to {@link #phaseFinished(BundlingEvents.Phase, long)}
+     */
+    long phaseStarted(BundlingEvents.Phase phase) {
+        this.phase = phase.name();
+        return System.nanoTime();
+    }
+
+    /**
+     * @param phase
+     * @param start value returned by {@link #phaseStarted(BundlingEvents.Phase)}
+     * @return duration of the phase in nanoseconds
+     */
+    long phaseFinished(BundlingEvents.Phase phase, long start) {
+        final long nanos = System.nanoTime() - start;
+        phaseTimes[phase.ordinal()].add(nanos);
+        return nanos;
+    }
+
+    /**
+     * Marks that no phase is running
+     */
+    void idle() {
+        phase = IDLE;
+    }
+
+    void compatibilitiesDetermined(long compatiblePairsCount) {
+        this.compatiblePairsCount = compatiblePairsCount;
+    }
+
+    void subdivisionsUpdated(int subdivisionPointsCount, long subdivisionDataBytes) {
+        this.subdivisionPointsCount = subdivisionPointsCount;
+        this.subdivisionDataBytes = subdivisionDataBytes;
+    }
+
+    /**
+     * Finishes phase {@link BundlingEvents.Phase#ITERATION}
+     *
+     * @param cycle
+     * @param iteration
+     * @param forceEvaluationsCount
+     * @param start value returned by {@link #phaseStarted(BundlingEvents.Phase)}
+     */
+    void iterationFinished(int cycle, int iteration, long forceEvaluationsCount, long start) {
+        final long nanos = phaseFinished(BundlingEvents.Phase.ITERATION, start);
+        this.cycle = cycle;
+        this.iteration = iteration;
+        this.forceEvaluationsCount.add(forceEvaluationsCount);
+        if (nanos > 0)
+            forceEvaluationsPerSecond = forceEvaluationsCount * 1e9 / nanos;
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public int getCycle() {
+        return cycle;
+    }
+
+    @Override
+    public int getIteration() {
+        return iteration;
+    }
+
+    @Override
+    public int getSubdivisionPointsCount() {
+        return subdivisionPointsCount;
+    }
+
+    @Override
+    public long getCompatiblePairsCount() {
+        return compatiblePairsCount;
+    }
+
+    @Override
+    public long getForceEvaluationsCount() {
+        return forceEvaluationsCount.sum();
+    }
+
+    @Override
+    public double getForceEvaluationsPerSecond() {
+        return forceEvaluationsPerSecond;
+    }
+
+    @Override
+    public long getSubdivisionDataBytes() {
+        return subdivisionDataBytes;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseTimesMillis() {
+        Map<String, Long> times = new LinkedHashMap<>();
+        for (BundlingEvents.Phase phase : BundlingEvents.Phase.values()) {
+            times.put(phase.name(), TimeUnit.NANOSECONDS.toMillis(phaseTimes[phase.ordinal()].sum()));
+        }
+        return times;
+    }
+
+    @Override
+    public void reset() {
+        forceEvaluationsCount.reset();
+        forceEvaluationsPerSecond = 0;
+        for (LongAdder time : phaseTimes) {
+            time.reset();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package core;
+
+import java.util.Map;
+
+/**
+ * Live metrics of bundling runs of this JVM, registered as {@link BundlingMonitoring#OBJECT_NAME}.
+ * Values describe the most recently updated run; counters and throughput add up all runs.
+ */
+public interface BundlingMetricsMXBean {
+
+    /**
+     * Returns phase being run, e.g. ITERATION, or IDLE
+     * @return
+     */
+    String getPhase();
+
+    int getCycle();
+
+    int getIteration();
+
+    /**
+     * Returns number of subdivision points per edge
+     * @return
+     */
+    int getSubdivisionPointsCount();
+
+    long getCompatiblePairsCount();
+
+    /**
+     * Returns number of spring and electrostatic forces calculated since the start or reset
+     * @return
+     */
+    long getForceEvaluationsCount();
+
+    /**
+     * Returns number of forces calculated per second by the last finished iteration
+     * @return
+     */
+    double getForceEvaluationsPerSecond();
+
+    /**
+     * Returns number of bytes of heap used by subdivision points and offsets of compatible points
+     * @return
+     */
+    long getSubdivisionDataBytes();
+
+    /**
+     * Returns total time spent in each phase in milliseconds since the start or reset. Phases are nested, e.g. time
+     * of cycles includes time of their iterations.
+     * @return
+     */
+    Map<String, Long> getPhaseTimesMillis();
+
+    void reset();
+}
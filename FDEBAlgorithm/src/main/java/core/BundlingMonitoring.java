@@ -0,0 +1,72 @@
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Provides recorders of the bundling pipeline shared by all runs: Java Flight Recorder events and JMX metrics.
+ *
+ * Events are recorded in category "FDEB" of a flight recording, e.g. one started by
+ * {@code -XX:StartFlightRecording} or {@code jcmd <pid> JFR.start}. Metrics are available through any JMX client,
+ * e.g. JConsole, as {@link #OBJECT_NAME}.
+ */
+public final class BundlingMonitoring {
+
+    private static final Logger LOGGER = Logger.getLogger(BundlingMonitoring.class.getName());
+
+    public static final String OBJECT_NAME = "core:type=BundlingMetrics";
+
+    // compiled only for Java 17+ into the versioned part of the jar, see the 'simd' profile in pom.xml
+    private static final String FLIGHT_RECORDER_EVENTS_CLASS = "core.FlightRecorderEvents";
+
+    private static final BundlingEvents EVENTS = loadEvents();
+    private static final BundlingMetrics METRICS = registerMetrics();
+
+    private BundlingMonitoring() throws IllegalAccessException {
+        throw new IllegalAccessException("Trying to initialize monitoring class...");
+    }
+
+    /**
+     * Returns recorder of Java Flight Recorder events, or {@link BundlingEvents#NONE} if the JFR API is not available
+     * (Java older than 17 or jar built without the 'simd' profile).
+     *
+     * @return
+     */
+    public static BundlingEvents events() {
+        return EVENTS;
+    }
+
+    /**
+     * Returns metrics of all runs, registered on the platform MBean server when first used
+     *
+     * @return
+     */
+    public static BundlingMetrics metrics() {
+        return METRICS;
+    }
+
+    private static BundlingEvents loadEvents() {
+        try {
+            return (BundlingEvents) Class.forName(FLIGHT_RECORDER_EVENTS_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.log(Level.INFO, "Flight Recorder API not available, events are not recorded: " + e);
+            return BundlingEvents.NONE;
+        }
+    }
+
+    private static BundlingMetrics registerMetrics() {
+        BundlingMetrics metrics = new BundlingMetrics();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            LOGGER.log(Level.INFO, OBJECT_NAME + " is already registered by another class loader");
+        } catch (JMException | SecurityException e) {
+            LOGGER.log(Level.WARNING, "Unable to register " + OBJECT_NAME, e);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,168 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Compatible edges of all edges stored in compressed sparse row format.
+ *
+ * Compatible edges of edge {@code e} are {@code neighbours[offsets[e]]} to {@code neighbours[offsets[e + 1] - 1]},
+ * in ascending order, their compatibility scores are stored at the same indices of {@code scores}.
+ * Each compatible pair is stored in both directions. Instances are immutable once built and may be shared
+ * by any number of threads.
+ */
+public class CompatibilityGraph {
+
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final float[] scores;
+
+    private CompatibilityGraph(int[] offsets, int[] neighbours, float[] scores) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.scores = scores;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getNeighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Returns compatibility scores of edges in {@link #getNeighbours()}
+     * @return
+     */
+    public float[] getScores() {
+        return scores;
+    }
+
+    public int getEdgesCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns number of compatible edges of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getDegree(int edgeID) {
+        return offsets[edgeID + 1] - offsets[edgeID];
+    }
+
+    /**
+     * Returns number of compatible pairs, each counted once
+     * @return
+     */
+    public int getPairsCount() {
+        return neighbours.length / 2;
+    }
+
+    /**
+     * Returns graph with pairs of this graph in which each edge is among {@code maxDegree} most compatible edges of
+     * the other one, so that no edge has more than {@code maxDegree} compatible edges. Ties are broken in favour of
+     * edges with lower IDs.
+     *
+     * @param maxDegree
+     * @return
+     */
+    public CompatibilityGraph limitDegree(int maxDegree) {
+        if (maxDegree < 0)
+            throw new IllegalArgumentException("Maximal degree must not be negative: " + maxDegree);
+
+        // whether neighbours[k] is among the most compatible edges of its edge
+        boolean[] selected = new boolean[neighbours.length];
+        long[] keys = new long[0];
+        for (int e = 0; e < getEdgesCount(); e++) {
+            final int degree = getDegree(e);
+            if (degree <= maxDegree) {
+                Arrays.fill(selected, offsets[e], offsets[e + 1], true);
+                continue;
+            }
+
+            // non-negative scores order as their bits, descending score is ascending complement
+            if (keys.length < degree)
+                keys = new long[degree];
+            for (int k = 0; k < degree; k++) {
+                keys[k] = (long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[offsets[e] + k])) << 32 | k;
+            }
+            Arrays.sort(keys, 0, degree);
+            for (int k = 0; k < maxDegree; k++) {
+                selected[offsets[e] + (int) keys[k]] = true;
+            }
+        }
+
+        Builder builder = new Builder(getEdgesCount());
+        for (int i = 0; i < getEdgesCount(); i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                final int j = neighbours[k];
+                if (j > i && selected[k]
+                        && selected[Arrays.binarySearch(neighbours, offsets[j], offsets[j + 1], i)])
+                    builder.addPair(i, j, scores[k]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects compatible pairs and builds {@link CompatibilityGraph} out of them.
+     * Pairs (i, j) with i < j have to be added in ascending order of i and then j, as produced by a scan over all
+     * pairs, for the neighbours of each edge to end up sorted.
+     */
+    public static class Builder {
+
+        private final int edgesCount;
+        private int[] pairs = new int[32];
+        private float[] pairScores = new float[16];
+        private int pairsCount;
+
+        public Builder(int edgesCount) {
+            this.edgesCount = edgesCount;
+        }
+
+        /**
+         * Adds compatible pair of edges {@code i} < {@code j} with given score
+         *
+         * @param i
+         * @param j
+         * @param score
+         * @return
+         */
+        public Builder addPair(int i, int j, double score) {
+            if (pairsCount == pairScores.length) {
+                pairs = Arrays.copyOf(pairs, 4 * pairsCount);
+                pairScores = Arrays.copyOf(pairScores, 2 * pairsCount);
+            }
+            pairs[2 * pairsCount] = i;
+            pairs[2 * pairsCount + 1] = j;
+            pairScores[pairsCount++] = (float) score;
+            return this;
+        }
+
+        public CompatibilityGraph build() {
+            int[] offsets = new int[edgesCount + 1];
+            for (int k = 0; k < 2 * pairsCount; k++) {
+                offsets[pairs[k] + 1]++;
+            }
+            for (int e = 0; e < edgesCount; e++) {
+                offsets[e + 1] += offsets[e];
+            }
+
+            int[] neighbours = new int[2 * pairsCount];
+            float[] scores = new float[2 * pairsCount];
+            int[] positions = Arrays.copyOf(offsets, edgesCount);
+            for (int k = 0; k < pairsCount; k++) {
+                int i = pairs[2 * k];
+                int j = pairs[2 * k + 1];
+                neighbours[positions[i]] = j;
+                scores[positions[i]++] = pairScores[k];
+                neighbours[positions[j]] = i;
+                scores[positions[j]++] = pairScores[k];
+            }
+
+            return new CompatibilityGraph(offsets, neighbours, scores);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package core;
+
+import model.Edge;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Compatibility scores of all pairs of edges scoring at least a floor, from which {@link CompatibilityGraph} of any
+ * threshold not lower than the floor is cut without scoring the pairs again.
+ *
+ * Pairs (i, j) with i < j are stored in the order of a scan over all pairs, together with their order by descending
+ * score. Pairs reaching a threshold are a prefix of the latter order, found by binary search.
+ * Scores are stored in double precision, so a pair is compatible with the graph cut from the store exactly when
+ * it is compatible with the graph calculated directly.
+ *
+ * Layout of the file (little-endian):
+ * header - int magic 'FDCS', int version, int edges count, int pairs count, double floor
+ * pairs  - int i, int j of each pair
+ * scores - double score of each pair
+ * order  - int indices of pairs by descending score
+ */
+public class CompatibilityScoreStore {
+
+    public static final int MAGIC = 0x53434446;
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".scores";
+
+    private static final int HEADER_SIZE = 24;
+
+    private final int edgesCount;
+    private final double floor;
+    private final int[] pairs;
+    private final double[] scores;
+    private final int[] order;
+
+    private CompatibilityScoreStore(int edgesCount, double floor, int[] pairs, double[] scores, int[] order) {
+        this.edgesCount = edgesCount;
+        this.floor = floor;
+        this.pairs = pairs;
+        this.scores = scores;
+        this.order = order;
+    }
+
+    /**
+     * Scores all pairs of given edges and stores those scoring at least {@code floor}
+     *
+     * @param edges
+     * @param floor lowest threshold the store can serve, in (0, 1]
+     * @return
+     */
+    public static CompatibilityScoreStore build(Edge[] edges, double floor) {
+        return build(edges, floor, () -> {
+        });
+    }
+
+    /**
+     * Scores all pairs of given edges and stores those scoring at least {@code floor}
+     *
+     * @param edges
+     * @param floor lowest threshold the store can serve, in (0, 1]
+     * @param cancellation called periodically, throws {@link java.util.concurrent.CancellationException} to stop
+     *                     scoring
+     * @return
+     */
+    public static CompatibilityScoreStore build(Edge[] edges, double floor, Runnable cancellation) {
+        if (!(floor > 0 && floor <= 1))
+            throw new IllegalArgumentException("Floor out of range (0, 1]: " + floor);
+
+        EdgeGeometry geometry = new EdgeGeometry(edges);
+        CompatibilityScorer scorer = new CompatibilityScorer(geometry);
+        EdgeMidpointIndex index = new EdgeMidpointIndex(geometry, floor);
+
+        int[] pairs = new int[32];
+        double[] scores = new double[16];
+        int pairsCount = 0;
+        for (int i = 0; i < edges.length - 1; i++) {
+            if (i % 64 == 0)
+                cancellation.run();
+
+            final int candidatesCount = index.findCandidates(i);
+            final int[] candidates = index.getCandidates();
+            for (int k = 0; k < candidatesCount; k++) {
+                double score = scorer.score(i, candidates[k]);
+                if (score < floor)
+                    continue;
+
+                if (pairsCount == scores.length) {
+                    pairs = Arrays.copyOf(pairs, 4 * pairsCount);
+                    scores = Arrays.copyOf(scores, 2 * pairsCount);
+                }
+                pairs[2 * pairsCount] = i;
+                pairs[2 * pairsCount + 1] = candidates[k];
+                scores[pairsCount++] = score;
+            }
+        }
+
+        pairs = Arrays.copyOf(pairs, 2 * pairsCount);
+        scores = Arrays.copyOf(scores, pairsCount);
+        return new CompatibilityScoreStore(edges.length, floor, pairs, scores, sortByScore(scores));
+    }
+
+    /**
+     * Returns indices of given scores ordered by descending score, equal scores in ascending order of index
+     *
+     * @param scores
+     * @return
+     */
+    private static int[] sortByScore(double[] scores) {
+        int[] order = new int[scores.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+
+        // bottom-up merge sort, stable
+        int[] buffer = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int from = 0; from < order.length; from += 2 * width) {
+                final int middle = Math.min(from + width, order.length);
+                final int to = Math.min(from + 2 * width, order.length);
+                int left = from;
+                int right = middle;
+                for (int k = from; k < to; k++) {
+                    if (right == to || left < middle && scores[order[left]] >= scores[order[right]])
+                        buffer[k] = order[left++];
+                    else
+                        buffer[k] = order[right++];
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Returns key of the store of given edges and floor, hash of geometry of the edges
+     *
+     * @param edges
+     * @param floor
+     * @return
+     */
+    public static String getKey(Edge[] edges, double floor) {
+        return new BundlingCache.KeyBuilder()
+                .add("compatibility scores")
+                .add(VERSION)
+                .add(floor)
+                .add(edges)
+                .build();
+    }
+
+    public int getEdgesCount() {
+        return edgesCount;
+    }
+
+    public double getFloor() {
+        return floor;
+    }
+
+    public int getPairsCount() {
+        return scores.length;
+    }
+
+    /**
+     * Returns true if graph of given threshold can be cut from the store
+     *
+     * @param threshold
+     * @return
+     */
+    public boolean covers(double threshold) {
+        return threshold >= floor && threshold <= 1;
+    }
+
+    /**
+     * Returns number of pairs scoring at least given threshold
+     *
+     * @param threshold
+     * @return
+     */
+    public int countPairs(double threshold) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scores[order[middle]] >= threshold)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Builds graph of pairs scoring at least given threshold
+     *
+     * @param threshold
+     * @return
+     * @throws IllegalArgumentException if the threshold is not covered by the store
+     */
+    public CompatibilityGraph toGraph(double threshold) {
+        if (!covers(threshold))
+            throw new IllegalArgumentException("Threshold " + threshold + " below floor " + floor);
+
+        // restore scan order of compatible pairs, required by the builder
+        int[] compatible = Arrays.copyOf(order, countPairs(threshold));
+        Arrays.sort(compatible);
+
+        CompatibilityGraph.Builder builder = new CompatibilityGraph.Builder(edgesCount);
+        for (int k : compatible) {
+            builder.addPair(pairs[2 * k], pairs[2 * k + 1], scores[k]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads store from given file
+     *
+     * @param path
+     * @return
+     * @throws IOException if file cannot be read or is not a store of supported version
+     */
+    public static CompatibilityScoreStore read(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Compatibility score store larger than 2 GB: " + path);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt() != MAGIC)
+                throw new IOException("Not a compatibility score store");
+            final int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported compatibility score store version " + version);
+
+            final int edgesCount = buffer.getInt();
+            final int pairsCount = buffer.getInt();
+            final double floor = buffer.getDouble();
+            if (HEADER_SIZE + 20L * pairsCount != buffer.capacity())
+                throw new IOException("Compatibility score store is truncated or corrupted");
+
+            int[] pairs = new int[2 * pairsCount];
+            double[] scores = new double[pairsCount];
+            int[] order = new int[pairsCount];
+            buffer.asIntBuffer().get(pairs);
+            buffer.position(buffer.position() + 8 * pairsCount);
+            buffer.asDoubleBuffer().get(scores);
+            buffer.position(buffer.position() + 8 * pairsCount);
+            buffer.asIntBuffer().get(order);
+
+            return new CompatibilityScoreStore(edgesCount, floor, pairs, scores, order);
+        }
+    }
+
+    /**
+     * Writes store into given file
+     *
+     * @param path
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        final long size = HEADER_SIZE + 20L * scores.length;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Compatibility score store would be larger than 2 GB");
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(edgesCount).putInt(scores.length).putDouble(floor);
+            buffer.asIntBuffer().put(pairs);
+            buffer.position(buffer.position() + 8 * scores.length);
+            buffer.asDoubleBuffer().put(scores);
+            buffer.position(buffer.position() + 8 * scores.length);
+            buffer.asIntBuffer().put(order);
+
+            buffer.force();
+        }
+    }
+}
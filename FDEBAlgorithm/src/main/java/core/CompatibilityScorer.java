@@ -0,0 +1,127 @@
+package core;
+
+/**
+ * Computes compatibility measures of pairs of edges from their cached {@link EdgeGeometry}, without creating any
+ * objects. Scores are equal to those computed by {@link model.Edge#edgeCompatibilityScore(model.Edge)}.
+ * Instances hold no mutable state and may be shared by any number of threads.
+ */
+public class CompatibilityScorer {
+
+    private final double[] fromX;
+    private final double[] fromY;
+    private final double[] toX;
+    private final double[] toY;
+    private final double[] vectorX;
+    private final double[] vectorY;
+    private final double[] lengths;
+    private final double[] midX;
+    private final double[] midY;
+
+    public CompatibilityScorer(EdgeGeometry geometry) {
+        this.fromX = geometry.getFromX();
+        this.fromY = geometry.getFromY();
+        this.toX = geometry.getToX();
+        this.toY = geometry.getToY();
+        this.vectorX = geometry.getVectorX();
+        this.vectorY = geometry.getVectorY();
+        this.lengths = geometry.getLengths();
+        this.midX = geometry.getMidX();
+        this.midY = geometry.getMidY();
+    }
+
+    /**
+     * Returns angle compatibility value of edges {@code p} and {@code q}
+     * C_a(P,Q) = |cos(arccos(dot(P,Q) / length(P)*length(Q))|
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public double angleCompatibility(int p, int q) {
+        return Math.abs((vectorX[p] * vectorX[q] + vectorY[p] * vectorY[q]) / (lengths[p] * lengths[q]));
+    }
+
+    /**
+     * Returns scale compatibility value of edges {@code p} and {@code q}
+     * C_s(P,Q) = 2 / (l_avg / min(length(P), length(Q) + max(length(P), length(Q)) / l_avg)
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public double scaleCompatibility(int p, int q) {
+        double l_avg = (lengths[p] + lengths[q]) / 2;
+
+        return 2 / (l_avg / Math.min(lengths[p], lengths[q]) + Math.max(lengths[p], lengths[q]) / l_avg);
+    }
+
+    /**
+     * Returns position compatibility value of edges {@code p} and {@code q}
+     * C_p(P,Q) = l_avg / (l_avg + ||P_m = Q_m||), where P_m and Q_m are midpoints of edges P and Q
+     * and l_avg is average length of edges P and Q
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public double positionCompatibility(int p, int q) {
+        double l_avg = (lengths[p] + lengths[q]) / 2;
+        double dx = midX[p] - midX[q];
+        double dy = midY[p] - midY[q];
+
+        return l_avg / (l_avg + Math.sqrt(dx * dx + dy * dy));
+    }
+
+    /**
+     * Return the visibility value of edge {@code p} and edge {@code q}
+     * visibility(P,Q) = max(1 - (2 * || P_m - I_m||) / ||Io_ - I1||, 0)
+     * where I_0 and I_1 are projections of endpoints of Q on the line of P and I_m is their midpoint
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public double edgeVisibility(int p, int q) {
+        final double lengthSquared = lengths[p] * lengths[p];
+
+        // intersect 0
+        double r0 = ((fromY[p] - fromY[q]) * (-vectorY[p]) - (fromX[p] - fromX[q]) * vectorX[p]) / lengthSquared;
+        double i0X = fromX[p] + r0 * vectorX[p];
+        double i0Y = fromY[p] + r0 * vectorY[p];
+        // intersect 1
+        double r1 = ((fromY[p] - toY[q]) * (-vectorY[p]) - (fromX[p] - toX[q]) * vectorX[p]) / lengthSquared;
+        double i1X = fromX[p] + r1 * vectorX[p];
+        double i1Y = fromY[p] + r1 * vectorY[p];
+
+        double imX = (i0X + i1X) / 2.0 - midX[p];
+        double imY = (i0Y + i1Y) / 2.0 - midY[p];
+        double iX = i0X - i1X;
+        double iY = i0Y - i1Y;
+
+        return Math.max(1 - 2 * Math.sqrt(imX * imX + imY * imY) / Math.sqrt(iX * iX + iY * iY), 0);
+    }
+
+    /**
+     * Returns visibility compatibility value of edges {@code p} and {@code q}
+     * C_v(P,Q) = min(visibility(P,Q), visibility(Q,P))
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public double visibilityCompatibility(int p, int q) {
+        return Math.min(edgeVisibility(p, q), edgeVisibility(q, p));
+    }
+
+    /**
+     * Returns total compatibility score of edges {@code p} and {@code q} based on all four compatibility measures
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public double score(int p, int q) {
+        return angleCompatibility(p, q) * scaleCompatibility(p, q) * positionCompatibility(p, q) *
+                visibilityCompatibility(p, q);
+    }
+}
@@ -10,6 +10,22 @@ public final class Configuration {
     public static final int DEFAULT_SUBDIVISION_POINTS_COUNT = 1;
     public static final double DEFAULT_ITERATIONS_INCREASE_RATE = 0.666;
     public static final int DEFAULT_SUBDIVISION_POINTS_RATE = 2;
+    public static final double DEFAULT_COMPATIBILITY_FLOOR = 0.3;
+    public static final double DEFAULT_CONVERGENCE_TOLERANCE = 0;
+    public static final double DEFAULT_FREEZING_TOLERANCE = 0;
+    public static final double DEFAULT_SNAPSHOT_RATE = 10;
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final String DEFAULT_CACHE_DIRECTORY = System.getProperty("user.home") + "/.fdeb/cache";
+    public static final long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+    public static final long DEFAULT_TIMEOUT_MINUTES = 10;
+    public static final int DEFAULT_COARSEST_EDGES_COUNT = 5000;
+    public static final int DEFAULT_REFINEMENT_CYCLES = 1;
+    public static final int DEFAULT_REFINEMENT_MAX_DEGREE = 32;
+    public static final String DEFAULT_MAPPED_DIRECTORY = System.getProperty("java.io.tmpdir") + "/fdeb";
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    public static final int DEFAULT_RESULT_SUBDIVISION_POINTS_COUNT = 64;
+    public static final int DEFAULT_SHARDS_COUNT = 2;
+    public static final long DEFAULT_WORKER_TIMEOUT_SECONDS = 30;
 
     private Configuration() throws IllegalAccessException {
         throw new IllegalAccessException("Trying to initialize configuration class...");
@@ -0,0 +1,226 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One level of coarsening of edges for {@link MultilevelEdgeBundling}.
+ *
+ * Edges whose endpoints fall into the same pair of cells of a square grid are merged into one representative edge
+ * between mean positions of their endpoints. Such edges are almost parallel and of almost the same length and
+ * position, so their compatibility is close to 1 and they would be bundled together anyway. Edges in opposite
+ * directions are merged as well, as compatibility does not depend on direction; those are marked as reversed.
+ * Grouping uses hashing only, so coarsening takes time linear in the number of edges.
+ */
+class EdgeCoarsening {
+
+    private final Node[] coarseNodes;
+    private final Edge[] coarseEdges;
+    // representative of each edge and whether the edge runs opposite to it
+    private final int[] representatives;
+    private final boolean[] reversed;
+
+    private EdgeCoarsening(Node[] coarseNodes, Edge[] coarseEdges, int[] representatives, boolean[] reversed) {
+        this.coarseNodes = coarseNodes;
+        this.coarseEdges = coarseEdges;
+        this.representatives = representatives;
+        this.reversed = reversed;
+    }
+
+    /**
+     * Merges edges with endpoints in the same cells of grid with given cell size
+     *
+     * @param edges
+     * @param cellSize
+     * @return
+     */
+    static EdgeCoarsening coarsen(Edge[] edges, double cellSize) {
+        final int edgesCount = edges.length;
+
+        // dense IDs of occupied cells
+        Map<Long, Integer> cells = new HashMap<>();
+        int[] fromCells = new int[edgesCount];
+        int[] toCells = new int[edgesCount];
+        for (int i = 0; i < edgesCount; i++) {
+            fromCells[i] = cellID(cells, edges[i].getFrom(), cellSize);
+            toCells[i] = cellID(cells, edges[i].getTo(), cellSize);
+        }
+        final long cellsCount = cells.size();
+
+        Map<Long, Integer> clusters = new HashMap<>();
+        int[] representatives = new int[edgesCount];
+        boolean[] reversed = new boolean[edgesCount];
+        // sums of endpoints of edges of each cluster, in direction of the cluster
+        double[] sums = new double[4 * edgesCount];
+        int[] sizes = new int[edgesCount];
+        // first edge of each cluster, gives direction of edges within a single cell
+        int[] firstEdges = new int[edgesCount];
+
+        for (int i = 0; i < edgesCount; i++) {
+            final int fromCell = Math.min(fromCells[i], toCells[i]);
+            final int toCell = Math.max(fromCells[i], toCells[i]);
+            Integer cluster = clusters.get(fromCell * cellsCount + toCell);
+            if (cluster == null) {
+                cluster = clusters.size();
+                clusters.put(fromCell * cellsCount + toCell, cluster);
+                firstEdges[cluster] = i;
+            }
+
+            final Edge edge = edges[i];
+            final boolean opposite = fromCells[i] != toCells[i] ? fromCells[i] > toCells[i]
+                    : edge.vector().dotProduct(edges[firstEdges[cluster]].vector()) < 0;
+            final Node from = opposite ? edge.getTo() : edge.getFrom();
+            final Node to = opposite ? edge.getFrom() : edge.getTo();
+
+            representatives[i] = cluster;
+            reversed[i] = opposite;
+            sums[4 * cluster] += from.getPosition().getX();
+            sums[4 * cluster + 1] += from.getPosition().getY();
+            sums[4 * cluster + 2] += to.getPosition().getX();
+            sums[4 * cluster + 3] += to.getPosition().getY();
+            sizes[cluster]++;
+        }
+
+        final int clustersCount = clusters.size();
+        Node[] coarseNodes = new Node[2 * clustersCount];
+        Edge[] coarseEdges = new Edge[clustersCount];
+        for (int c = 0; c < clustersCount; c++) {
+            coarseNodes[2 * c] = new Node(sums[4 * c] / sizes[c], sums[4 * c + 1] / sizes[c], 2 * c, null);
+            coarseNodes[2 * c + 1] = new Node(sums[4 * c + 2] / sizes[c], sums[4 * c + 3] / sizes[c], 2 * c + 1,
+                    null);
+            coarseEdges[c] = new Edge(coarseNodes[2 * c], coarseNodes[2 * c + 1], c);
+        }
+
+        return new EdgeCoarsening(coarseNodes, coarseEdges, representatives, reversed);
+    }
+
+    private static int cellID(Map<Long, Integer> cells, Node node, double cellSize) {
+        final long column = (long) Math.floor(node.getPosition().getX() / cellSize);
+        final long row = (long) Math.floor(node.getPosition().getY() / cellSize);
+        final long key = (column << 32) ^ (row & 0xFFFFFFFFL);
+
+        Integer id = cells.get(key);
+        if (id == null) {
+            id = cells.size();
+            cells.put(key, id);
+        }
+        return id;
+    }
+
+    Node[] getCoarseNodes() {
+        return coarseNodes;
+    }
+
+    Edge[] getCoarseEdges() {
+        return coarseEdges;
+    }
+
+    /**
+     * Scores pairs of finer edges whose representatives are the same or compatible coarse edges. Edges compatible
+     * with an edge are mostly merged with it or with edges compatible with it, so only edges of (1 + degree)
+     * representatives are scored for each edge, instead of all edges around it.
+     *
+     * @param edges finer edges this coarsening was created from
+     * @param coarseGraph compatible coarse edges
+     * @param threshold minimal compatibility of pairs of finer edges
+     * @return
+     */
+    CompatibilityGraph scoreCompatibilities(Edge[] edges, CompatibilityGraph coarseGraph, double threshold) {
+        // finer edges of each representative, in ascending order
+        int[] memberOffsets = new int[coarseEdges.length + 1];
+        for (int representative : representatives) {
+            memberOffsets[representative + 1]++;
+        }
+        for (int c = 0; c < coarseEdges.length; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] members = new int[edges.length];
+        int[] positions = Arrays.copyOf(memberOffsets, coarseEdges.length);
+        for (int i = 0; i < edges.length; i++) {
+            members[positions[representatives[i]]++] = i;
+        }
+
+        final int[] coarseOffsets = coarseGraph.getOffsets();
+        final int[] coarseNeighbours = coarseGraph.getNeighbours();
+        CompatibilityScorer scorer = new CompatibilityScorer(new EdgeGeometry(edges));
+        CompatibilityGraph.Builder builder = new CompatibilityGraph.Builder(edges.length);
+        int[] candidates = new int[16];
+        for (int i = 0; i < edges.length; i++) {
+            final int representative = representatives[i];
+            int candidatesCount = 0;
+            for (int k = coarseOffsets[representative] - 1; k < coarseOffsets[representative + 1]; k++) {
+                final int c = k < coarseOffsets[representative] ? representative : coarseNeighbours[k];
+                for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                    if (members[m] <= i)
+                        continue;
+                    if (candidatesCount == candidates.length)
+                        candidates = Arrays.copyOf(candidates, 2 * candidatesCount);
+                    candidates[candidatesCount++] = members[m];
+                }
+            }
+
+            // pairs have to be added in ascending order
+            Arrays.sort(candidates, 0, candidatesCount);
+            for (int k = 0; k < candidatesCount; k++) {
+                final double score = scorer.score(i, candidates[k]);
+                if (score >= threshold)
+                    builder.addPair(i, candidates[k], score);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates subdivision points of the finer edges from bundled subdivision points of their representatives.
+     * Polyline of the representative is shifted so that it ends at endpoints of the edge, shift changing linearly
+     * along the polyline:
+     * p_i = r_i + (1 - t_i) * (from - r_0) + t_i * (to - r_(n-1)), t_i = i / (n - 1)
+     * and reversed for edges running opposite to their representative.
+     *
+     * @param edges finer edges this coarsening was created from
+     * @param coarsePoints bundled subdivision points of coarse edges
+     * @return
+     */
+    SubdivisionBuffer prolong(Edge[] edges, SubdivisionBuffer coarsePoints) {
+        final double[] coarseX = coarsePoints.getX();
+        final double[] coarseY = coarsePoints.getY();
+
+        int[] offsets = new int[edges.length + 1];
+        for (int i = 0; i < edges.length; i++) {
+            offsets[i + 1] = offsets[i] + coarsePoints.getPointsCount(representatives[i]);
+        }
+
+        double[] x = new double[offsets[edges.length]];
+        double[] y = new double[offsets[edges.length]];
+        for (int i = 0; i < edges.length; i++) {
+            final int coarseOffset = coarsePoints.getOffset(representatives[i]);
+            final int n = offsets[i + 1] - offsets[i];
+            final int last = coarseOffset + n - 1;
+
+            // endpoints of the edge in direction of its representative
+            final Node from = reversed[i] ? edges[i].getTo() : edges[i].getFrom();
+            final Node to = reversed[i] ? edges[i].getFrom() : edges[i].getTo();
+            final double fromShiftX = from.getPosition().getX() - coarseX[coarseOffset];
+            final double fromShiftY = from.getPosition().getY() - coarseY[coarseOffset];
+            final double toShiftX = to.getPosition().getX() - coarseX[last];
+            final double toShiftY = to.getPosition().getY() - coarseY[last];
+
+            for (int j = 1; j < n - 1; j++) {
+                final double t = (double) j / (n - 1);
+                final int p = reversed[i] ? offsets[i + 1] - 1 - j : offsets[i] + j;
+                x[p] = coarseX[coarseOffset + j] + (1 - t) * fromShiftX + t * toShiftX;
+                y[p] = coarseY[coarseOffset + j] + (1 - t) * fromShiftY + t * toShiftY;
+            }
+            x[offsets[i]] = edges[i].getFrom().getPosition().getX();
+            y[offsets[i]] = edges[i].getFrom().getPosition().getY();
+            x[offsets[i + 1] - 1] = edges[i].getTo().getPosition().getX();
+            y[offsets[i + 1] - 1] = edges[i].getTo().getPosition().getY();
+        }
+
+        return new SubdivisionBuffer(x, y, offsets, coarsePoints.getSubdivisionPointsCount());
+    }
+}
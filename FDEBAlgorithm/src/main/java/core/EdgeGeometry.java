@@ -0,0 +1,121 @@
+package core;
+
+import model.Edge;
+
+/**
+ * Immutable straight-line geometry of edges, computed once and stored in primitive arrays indexed by edge ID.
+ * Values are computed by the same arithmetic as the corresponding methods of {@link Edge}.
+ */
+public class EdgeGeometry {
+
+    private final double[] fromX;
+    private final double[] fromY;
+    private final double[] toX;
+    private final double[] toY;
+    private final double[] vectorX;
+    private final double[] vectorY;
+    private final double[] unitX;
+    private final double[] unitY;
+    private final double[] lengths;
+    private final double[] midX;
+    private final double[] midY;
+
+    public EdgeGeometry(Edge[] edges) {
+        final int n = edges.length;
+        fromX = new double[n];
+        fromY = new double[n];
+        toX = new double[n];
+        toY = new double[n];
+        vectorX = new double[n];
+        vectorY = new double[n];
+        unitX = new double[n];
+        unitY = new double[n];
+        lengths = new double[n];
+        midX = new double[n];
+        midY = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            fromX[i] = edges[i].getFrom().getPosition().getX();
+            fromY[i] = edges[i].getFrom().getPosition().getY();
+            toX[i] = edges[i].getTo().getPosition().getX();
+            toY[i] = edges[i].getTo().getPosition().getY();
+
+            vectorX[i] = toX[i] - fromX[i];
+            vectorY[i] = toY[i] - fromY[i];
+            lengths[i] = Math.sqrt(vectorX[i] * vectorX[i] + vectorY[i] * vectorY[i]);
+            unitX[i] = vectorX[i] / lengths[i];
+            unitY[i] = vectorY[i] / lengths[i];
+
+            midX[i] = (fromX[i] + toX[i]) / 2.0;
+            midY[i] = (fromY[i] + toY[i]) / 2.0;
+        }
+    }
+
+    public int getEdgesCount() {
+        return lengths.length;
+    }
+
+    public double[] getFromX() {
+        return fromX;
+    }
+
+    public double[] getFromY() {
+        return fromY;
+    }
+
+    public double[] getToX() {
+        return toX;
+    }
+
+    public double[] getToY() {
+        return toY;
+    }
+
+    /**
+     * Returns x components of vectors {@code to - from}
+     * @return
+     */
+    public double[] getVectorX() {
+        return vectorX;
+    }
+
+    /**
+     * Returns y components of vectors {@code to - from}
+     * @return
+     */
+    public double[] getVectorY() {
+        return vectorY;
+    }
+
+    /**
+     * Returns x components of unit vectors in direction of edges, NaN for edges of zero length
+     * @return
+     */
+    public double[] getUnitX() {
+        return unitX;
+    }
+
+    /**
+     * Returns y components of unit vectors in direction of edges, NaN for edges of zero length
+     * @return
+     */
+    public double[] getUnitY() {
+        return unitY;
+    }
+
+    /**
+     * Returns lengths of edges as euclidean distances between start-points and end-points
+     * @return
+     */
+    public double[] getLengths() {
+        return lengths;
+    }
+
+    public double[] getMidX() {
+        return midX;
+    }
+
+    public double[] getMidY() {
+        return midY;
+    }
+}
@@ -0,0 +1,288 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index over midpoints of edges, used to find pairs of edges which can reach given compatibility threshold.
+ *
+ * Since all compatibility measures are at most 1, compatible edges P and Q must satisfy
+ * C_p(P,Q) = l_avg / (l_avg + ||P_m - Q_m||) >= threshold, i.e. ||P_m - Q_m|| <= l_avg * (1 - threshold) / threshold,
+ * and C_s(P,Q) >= threshold, which bounds the ratio of their lengths. Edges are therefore bucketed into length
+ * classes (by binary exponent of their length), each class having its own grid of midpoints, and only edges from
+ * classes of admissible length and cells within the maximal midpoint distance are considered. Of those, only
+ * edges whose product C_a(P,Q) * C_s(P,Q) * C_p(P,Q) reaches the threshold are returned as candidates.
+ * All bounds are slightly relaxed, so that no compatible pair is lost to rounding errors.
+ */
+class EdgeMidpointIndex {
+
+    // relative slack applied to threshold and distance bounds
+    private static final double SLACK = 1e-6;
+    // maximal number of grid cells along one axis of the bounding box
+    private static final double MAX_CELLS_PER_AXIS = 1 << 20;
+
+    private final double[] midX;
+    private final double[] midY;
+    private final double[] lengths;
+    private final double[] unitX;
+    private final double[] unitY;
+
+    // midpoint distance bound per unit of average length, (1 - threshold) / threshold
+    private final double distanceFactor;
+    // maximal ratio of lengths of compatible edges
+    private final double maxLengthRatio;
+    private final double threshold;
+
+    private final LengthClass[] classes;
+
+    // result of the last query
+    private int[] candidates = new int[16];
+    private int candidatesCount;
+
+    /**
+     * Grid of midpoints of edges whose length lies in [2^exponent, 2^(exponent + 1)).
+     * Occupied cells are stored sorted by their key, edges of cell {@code c} are
+     * {@code edgeIDs[cellStarts[c]]} to {@code edgeIDs[cellStarts[c + 1] - 1]}, in ascending order.
+     */
+    private static class LengthClass {
+        int exponent;
+        double cellSize;
+        long[] cellKeys;
+        int[] cellStarts;
+        int[] edgeIDs;
+    }
+
+    /**
+     * Builds index over given edges for given compatibility threshold, which has to be in (0, 1].
+     *
+     * @param geometry
+     * @param threshold
+     */
+    EdgeMidpointIndex(EdgeGeometry geometry, double threshold) {
+        if (!(threshold > 0 && threshold <= 1))
+            throw new IllegalArgumentException("Threshold out of range (0, 1]: " + threshold);
+
+        this.threshold = threshold;
+        midX = geometry.getMidX();
+        midY = geometry.getMidY();
+        lengths = geometry.getLengths();
+        unitX = geometry.getUnitX();
+        unitY = geometry.getUnitY();
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < midX.length; i++) {
+            minX = Math.min(minX, midX[i]);
+            minY = Math.min(minY, midY[i]);
+            maxX = Math.max(maxX, midX[i]);
+            maxY = Math.max(maxY, midY[i]);
+        }
+
+        final double relaxedThreshold = threshold * (1 - SLACK);
+        distanceFactor = (1 - relaxedThreshold) / relaxedThreshold;
+        maxLengthRatio = maxLengthRatio(relaxedThreshold) * (1 + SLACK);
+
+        final double minCellSize = Math.max(maxX - minX, maxY - minY) / MAX_CELLS_PER_AXIS;
+
+        // edges of zero (or undefined) length are never compatible with any edge, they are not indexed at all
+        int[] exponents = new int[midX.length];
+        int minExponent = Integer.MAX_VALUE, maxExponent = Integer.MIN_VALUE;
+        for (int i = 0; i < midX.length; i++) {
+            if (!(lengths[i] > 0) || Double.isInfinite(lengths[i]))
+                continue;
+            exponents[i] = Math.getExponent(lengths[i]);
+            minExponent = Math.min(minExponent, exponents[i]);
+            maxExponent = Math.max(maxExponent, exponents[i]);
+        }
+
+        if (minExponent > maxExponent) {
+            classes = new LengthClass[0];
+            return;
+        }
+
+        LengthClass[] byExponent = new LengthClass[maxExponent - minExponent + 1];
+        int[] classSizes = new int[byExponent.length];
+        for (int i = 0; i < midX.length; i++) {
+            if (lengths[i] > 0 && !Double.isInfinite(lengths[i]))
+                classSizes[exponents[i] - minExponent]++;
+        }
+
+        int classesCount = 0;
+        for (int c = 0; c < byExponent.length; c++) {
+            if (classSizes[c] == 0)
+                continue;
+
+            LengthClass lengthClass = new LengthClass();
+            lengthClass.exponent = minExponent + c;
+            // largest midpoint distance of two compatible edges both from this class
+            lengthClass.cellSize = Math.max(Math.scalb(2.0, lengthClass.exponent) * distanceFactor, minCellSize);
+            lengthClass.edgeIDs = new int[classSizes[c]];
+            byExponent[c] = lengthClass;
+            classesCount++;
+        }
+
+        int[] filled = new int[byExponent.length];
+        for (int i = 0; i < midX.length; i++) {
+            if (lengths[i] > 0 && !Double.isInfinite(lengths[i])) {
+                int c = exponents[i] - minExponent;
+                byExponent[c].edgeIDs[filled[c]++] = i;
+            }
+        }
+
+        classes = new LengthClass[classesCount];
+        int idx = 0;
+        for (LengthClass lengthClass : byExponent) {
+            if (lengthClass != null) {
+                buildCells(lengthClass);
+                classes[idx++] = lengthClass;
+            }
+        }
+    }
+
+    /**
+     * Returns maximal ratio r = max(length(P), length(Q)) / min(length(P), length(Q)) for which
+     * C_s(P,Q) = 4 * (1 + r) / ((1 + r)^2 + 4 * r) is at least {@code threshold}.
+     *
+     * @param threshold
+     * @return
+     */
+    private static double maxLengthRatio(double threshold) {
+        // positive root of threshold * r^2 + (6 * threshold - 4) * r + (threshold - 4) = 0
+        double b = 6 * threshold - 4;
+        double c = threshold - 4;
+        return (-b + Math.sqrt(b * b - 4 * threshold * c)) / (2 * threshold);
+    }
+
+    private static long cellKey(long cellX, long cellY) {
+        return (cellX << 32) ^ (cellY & 0xffffffffL);
+    }
+
+    private long cellKey(LengthClass lengthClass, int edgeID) {
+        return cellKey((long) Math.floor(midX[edgeID] / lengthClass.cellSize),
+                (long) Math.floor(midY[edgeID] / lengthClass.cellSize));
+    }
+
+    /**
+     * Sorts edges of given class by cells of their midpoints and fills its cell arrays
+     *
+     * @param lengthClass
+     */
+    private void buildCells(LengthClass lengthClass) {
+        final int n = lengthClass.edgeIDs.length;
+        long[] keys = new long[n];
+        Integer[] order = new Integer[n];
+        for (int k = 0; k < n; k++) {
+            keys[k] = cellKey(lengthClass, lengthClass.edgeIDs[k]);
+            order[k] = k;
+        }
+        // stable sort keeps edges of each cell in ascending order of IDs
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        int[] sortedIDs = new int[n];
+        long[] cellKeys = new long[n];
+        int[] cellStarts = new int[n + 1];
+        int cells = 0;
+        for (int k = 0; k < n; k++) {
+            sortedIDs[k] = lengthClass.edgeIDs[order[k]];
+            if (k == 0 || keys[order[k]] != keys[order[k - 1]]) {
+                cellKeys[cells] = keys[order[k]];
+                cellStarts[cells++] = k;
+            }
+        }
+        cellStarts[cells] = n;
+
+        lengthClass.edgeIDs = sortedIDs;
+        lengthClass.cellKeys = Arrays.copyOf(cellKeys, cells);
+        lengthClass.cellStarts = Arrays.copyOf(cellStarts, cells + 1);
+    }
+
+    /**
+     * Stores IDs of edges greater than {@code edgeID} which might be compatible with it into {@code candidates},
+     * in ascending order, and returns their count. The array is enlarged if needed, see {@link #getCandidates()}.
+     *
+     * @param edgeID
+     * @return number of candidates
+     */
+    int findCandidates(int edgeID) {
+        candidatesCount = 0;
+        final double length = lengths[edgeID];
+        if (!(length > 0) || Double.isInfinite(length))
+            return 0;
+
+        final double minLength = length / maxLengthRatio;
+        final double maxLength = length * maxLengthRatio;
+
+        for (LengthClass lengthClass : classes) {
+            final double classMin = Math.scalb(1.0, lengthClass.exponent);
+            final double classMax = Math.scalb(2.0, lengthClass.exponent);
+            if (classMax < minLength || classMin > maxLength)
+                continue;
+
+            final double radius = (length + Math.min(classMax, maxLength)) / 2 * distanceFactor * (1 + SLACK);
+            final double radiusSquared = radius * radius;
+            final double cellSize = lengthClass.cellSize;
+
+            final long minCellX = (long) Math.floor((midX[edgeID] - radius) / cellSize);
+            final long maxCellX = (long) Math.floor((midX[edgeID] + radius) / cellSize);
+            final long minCellY = (long) Math.floor((midY[edgeID] - radius) / cellSize);
+            final long maxCellY = (long) Math.floor((midY[edgeID] + radius) / cellSize);
+
+            final int cellsCount = lengthClass.cellKeys.length;
+            if ((double) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) >= cellsCount) {
+                // query box covers more cells than are occupied, scan them all
+                for (int c = 0; c < cellsCount; c++) {
+                    long cellX = lengthClass.cellKeys[c] >> 32;
+                    long cellY = (int) lengthClass.cellKeys[c];
+                    if (cellX >= minCellX && cellX <= maxCellX && cellY >= minCellY && cellY <= maxCellY)
+                        collectCell(lengthClass, c, edgeID, radiusSquared);
+                }
+            } else {
+                for (long cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (long cellY = minCellY; cellY <= maxCellY; cellY++) {
+                        int c = Arrays.binarySearch(lengthClass.cellKeys, cellKey(cellX, cellY));
+                        if (c >= 0)
+                            collectCell(lengthClass, c, edgeID, radiusSquared);
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(candidates, 0, candidatesCount);
+        return candidatesCount;
+    }
+
+    /**
+     * Returns array filled by the last call of {@link #findCandidates(int)}
+     * @return
+     */
+    int[] getCandidates() {
+        return candidates;
+    }
+
+    private void collectCell(LengthClass lengthClass, int cell, int edgeID, double radiusSquared) {
+        for (int k = lengthClass.cellStarts[cell]; k < lengthClass.cellStarts[cell + 1]; k++) {
+            int other = lengthClass.edgeIDs[k];
+            if (other <= edgeID)
+                continue;
+
+            double dx = midX[other] - midX[edgeID];
+            double dy = midY[other] - midY[edgeID];
+            double distanceSquared = dx * dx + dy * dy;
+            if (distanceSquared > radiusSquared)
+                continue;
+
+            // product of angle, scale and position compatibility bounds the total score as well
+            double angle = Math.abs(unitX[edgeID] * unitX[other] + unitY[edgeID] * unitY[other]);
+            double lMin = Math.min(lengths[edgeID], lengths[other]);
+            double lMax = Math.max(lengths[edgeID], lengths[other]);
+            double lAvg = (lMin + lMax) / 2;
+            double scale = 2 / (lAvg / lMin + lMax / lAvg);
+            double position = lAvg / (lAvg + Math.sqrt(distanceSquared));
+            if (angle * scale * position * (1 + SLACK) < threshold)
+                continue;
+
+            if (candidatesCount == candidates.length)
+                candidates = Arrays.copyOf(candidates, 2 * candidatesCount);
+            candidates[candidatesCount++] = other;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package core;
+
+/**
+ * Calculates electrostatic force applied on one subdivision point by corresponding subdivision points of its
+ * compatible edges.
+ * F_e = sum of (q - p) / ||q - p|| over corresponding subdivision points q of compatible edges
+ *
+ * Pairs of points closer than {@link #EPS} in either axis do not interact.
+ */
+public interface ElectrostaticKernel {
+
+    // constant to ignore forces if they are too small
+    double EPS = 0.0001;
+
+    /**
+     * Adds electrostatic force applied on point {@code p} to {@code force}. Corresponding points of compatible
+     * edges are at indices {@code pointOffsets[k] + i} for {@code k} in [{@code from}, {@code to}).
+     *
+     * @param x x positions of all subdivision points
+     * @param y y positions of all subdivision points
+     * @param p index of the point
+     * @param i index of the point within its edge
+     * @param pointOffsets offsets of first subdivision points of compatible edges
+     * @param from
+     * @param to
+     * @param force
+     */
+    void addForce(double[] x, double[] y, int p, int i, int[] pointOffsets, int from, int to, double[] force);
+}
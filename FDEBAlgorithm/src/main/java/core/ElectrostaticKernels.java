@@ -0,0 +1,62 @@
+package core;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provides available implementations of {@link ElectrostaticKernel}.
+ */
+public final class ElectrostaticKernels {
+
+    private static final Logger LOGGER = Logger.getLogger(ElectrostaticKernels.class.getName());
+
+    // compiled only for Java 17+ into the versioned part of the jar, see the 'simd' profile in pom.xml
+    private static final String VECTOR_KERNEL_CLASS = "core.VectorElectrostaticKernel";
+    private static final String VECTOR_FLOAT_KERNEL_CLASS = "core.VectorFloatElectrostaticKernel";
+
+    private ElectrostaticKernels() throws IllegalAccessException {
+        throw new IllegalAccessException("Trying to initialize kernels class...");
+    }
+
+    public static ElectrostaticKernel scalar() {
+        return new ScalarElectrostaticKernel();
+    }
+
+    /**
+     * Returns kernel using SIMD instructions through the Java Vector API, or scalar kernel if the API is not
+     * available (Java older than 17, jar built without the 'simd' profile or JVM started without
+     * {@code --add-modules jdk.incubator.vector}).
+     * Vectorized kernel sums forces of compatible edges in a different order, its results therefore differ from
+     * the scalar kernel by rounding errors.
+     *
+     * @return
+     */
+    public static ElectrostaticKernel vectorized() {
+        try {
+            return (ElectrostaticKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.log(Level.INFO, "Vector API not available, using scalar electrostatic kernel: " + e);
+            return scalar();
+        }
+    }
+
+    public static FloatElectrostaticKernel scalarFloat() {
+        return new ScalarFloatElectrostaticKernel();
+    }
+
+    /**
+     * Returns single precision kernel using SIMD instructions, or scalar single precision kernel if the Vector API is
+     * not available, see {@link #vectorized()}
+     *
+     * @return
+     */
+    public static FloatElectrostaticKernel vectorizedFloat() {
+        try {
+            return (FloatElectrostaticKernel) Class.forName(VECTOR_FLOAT_KERNEL_CLASS).getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.log(Level.INFO, "Vector API not available, using scalar electrostatic kernel: " + e);
+            return scalarFloat();
+        }
+    }
+}
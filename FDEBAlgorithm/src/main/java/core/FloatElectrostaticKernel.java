@@ -0,0 +1,29 @@
+package core;
+
+/**
+ * Single precision variant of {@link ElectrostaticKernel}, used by {@link ForceDirectedEdgeBundling} in single
+ * precision mode.
+ * F_e = sum of (q - p) / ||q - p|| over corresponding subdivision points q of compatible edges
+ *
+ * Pairs of points closer than {@link #EPS} in either axis do not interact.
+ */
+public interface FloatElectrostaticKernel {
+
+    // constant to ignore forces if they are too small
+    float EPS = (float) ElectrostaticKernel.EPS;
+
+    /**
+     * Adds electrostatic force applied on point {@code p} to {@code force}, see
+     * {@link ElectrostaticKernel#addForce(double[], double[], int, int, int[], int, int, double[])}
+     *
+     * @param x x positions of all subdivision points
+     * @param y y positions of all subdivision points
+     * @param p index of the point
+     * @param i index of the point within its edge
+     * @param pointOffsets offsets of first subdivision points of compatible edges
+     * @param from
+     * @param to
+     * @param force
+     */
+    void addForce(float[] x, float[] y, int p, int i, int[] pointOffsets, int from, int to, float[] force);
+}
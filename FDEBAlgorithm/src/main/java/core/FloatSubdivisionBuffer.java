@@ -0,0 +1,94 @@
+package core;
+
+/**
+ * Single precision copy of positions of a {@link SubdivisionBuffer}, sharing its offsets, into which
+ * {@link ForceDirectedEdgeBundling} moves subdivision points in single precision mode. Positions are copied back into
+ * the double buffer by {@link #store()} whenever the double buffer is read, i.e. before resampling.
+ */
+class FloatSubdivisionBuffer {
+
+    private final SubdivisionBuffer buffer;
+    private float[] x;
+    private float[] y;
+    private float[] nextX;
+    private float[] nextY;
+
+    /**
+     * @param buffer buffer whose current positions are rounded to floats
+     */
+    FloatSubdivisionBuffer(SubdivisionBuffer buffer) {
+        this.buffer = buffer;
+        this.x = toFloats(buffer.getX());
+        this.y = toFloats(buffer.getY());
+        this.nextX = x.clone();
+        this.nextY = y.clone();
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    float[] getX() {
+        return x;
+    }
+
+    float[] getY() {
+        return y;
+    }
+
+    float[] getNextX() {
+        return nextX;
+    }
+
+    float[] getNextY() {
+        return nextY;
+    }
+
+    /**
+     * Makes positions written into {@link #getNextX()} and {@link #getNextY()} current.
+     */
+    void swap() {
+        float[] tmp = x;
+        x = nextX;
+        nextX = tmp;
+        tmp = y;
+        y = nextY;
+        nextY = tmp;
+    }
+
+    /**
+     * Returns index of start-point of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    int getOffset(int edgeID) {
+        return buffer.getOffset(edgeID);
+    }
+
+    /**
+     * Copies current positions into both current and next positions of the double buffer
+     */
+    void store() {
+        final double[] bufferX = buffer.getX();
+        final double[] bufferY = buffer.getY();
+        final double[] bufferNextX = buffer.getNextX();
+        final double[] bufferNextY = buffer.getNextY();
+        for (int p = 0; p < x.length; p++) {
+            bufferX[p] = bufferNextX[p] = x[p];
+            bufferY[p] = bufferNextY[p] = y[p];
+        }
+    }
+
+    /**
+     * Returns number of bytes of heap used by positions
+     * @return
+     */
+    long getHeapBytes() {
+        return 16L * x.length;
+    }
+}
@@ -1,11 +1,16 @@
 package core;
 
-import model.Coordinate;
 import model.Node;
 import model.Edge;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,10 +24,37 @@ import java.util.logging.Logger;
  * DEFAULT_ITERATIONS_INCREASE_RATE - multiplier of number of iterations (used after each cycle), 0.66 by default
  * DEFAULT_SUBDIVISION_POINTS_RATE - divisor of number of subdivision points (used after each cycle), 2 by default
  *
+ * Forces of all edges may be calculated in parallel, see {@link #setParallelism(int)}. Each thread reads only
+ * current positions and writes new positions of its own edges, so the result is the same for any number of threads.
+ *
+ * Maximal and mean displacement of subdivision points is tracked in each iteration. If a convergence tolerance is set,
+ * see {@link #setConvergenceTolerance(double)}, a cycle ends as soon as mean displacement falls below the given
+ * fraction of its largest value in the cycle.
+ *
+ * Edges that settle may be frozen, see {@link #setFreezingTolerance(double)}: forces on subdivision points of frozen
+ * edges are not calculated until the edge or one of its compatible edges moves again.
+ *
+ * Subdivision points may be moved in single precision, see {@link #setSinglePrecision(boolean)}. Rounding errors of
+ * floats flip pairs of points near the {@link ElectrostaticKernel#EPS} cut-off and are carried over to later
+ * iterations, so results drift from double precision ones. The drift is largest after the first cycle and shrinks
+ * as step size halves in later cycles. Measured as distance of each point from the double precision polyline of its
+ * edge, with default parameters on airlines and migrations datasets (1100x610 canvas of {@link IOParser}):
+ * after 1 cycle at most 0.3 % of the extent of the graph (3 px), 0.002 % on average;
+ * after 6 cycles at most 0.1 % of the extent (1 px), 0.0005 % on average.
+ *
+ * Results may be stored in a {@link BundlingCache}, see {@link #setCache(BundlingCache)}; a run with the same edges
+ * and parameters as a cached one only loads its subdivision points.
+ *
+ * A run may be stopped by {@link #cancel()} or by a timeout, see {@link #setTimeout(long, TimeUnit)}. Both are checked
+ * between iterations and while compatible edges are determined; {@link #run()} then throws
+ * {@link CancellationException}. {@link BundlingExecutor} runs instances as cancellable jobs.
+ *
  */
 public class ForceDirectedEdgeBundling implements Observable {
 
     private static final Logger LOGGER = Logger.getLogger(ForceDirectedEdgeBundling.class.getName());
+    private static final BundlingEvents EVENTS = BundlingMonitoring.events();
+    private static final BundlingMetrics METRICS = BundlingMonitoring.metrics();
 
     private final double STEP_SIZE;
     private final double COMPATIBILITY;
@@ -34,8 +66,63 @@ public class ForceDirectedEdgeBundling implements Observable {
     private Node[] nodes;
     private Edge[] edges;
 
+    // subdivision points of all edges, including their endpoints
+    private SubdivisionBuffer subdivisionPoints;
+    // straight-line geometry of edges
+    private EdgeGeometry geometry;
+    // compatible edges of each edge
+    private CompatibilityGraph compatibilityGraph;
+    // offsets of first subdivision points of edges in compatibilityGraph.getNeighbours(), updated every cycle
+    private int[] compatiblePointOffsets;
+    private ElectrostaticKernel electrostaticKernel = ElectrostaticKernels.scalar();
+    private FloatElectrostaticKernel floatElectrostaticKernel = ElectrostaticKernels.scalarFloat();
+    // whether subdivision points are moved in single precision, see setSinglePrecision(boolean)
+    private boolean singlePrecision;
+    // single precision positions of subdivision points, null in double precision
+    private FloatSubdivisionBuffer floatSubdivisionPoints;
+    // whether electrostatic forces are evaluated once per pair of points, see setSymmetric(boolean)
+    private boolean symmetric;
+    private SymmetricElectrostaticForces symmetricForces;
+    private BundlingCache cache;
+    private SnapshotChannel snapshotChannel;
+    // subdivision points the run starts from and the cycle it starts at, see setWarmStart
+    private SubdivisionBuffer initialSubdivisionPoints;
+    private int firstCycle;
+    // compatible edges given instead of being scored, see setCompatibilityGraph
+    private CompatibilityGraph initialCompatibilityGraph;
+
+    // fraction of the largest mean displacement in a cycle below which the cycle ends, 0 to perform all iterations
+    private double convergenceTolerance = Configuration.DEFAULT_CONVERGENCE_TOLERANCE;
+    // displacement at the initial step size below which an edge is frozen, 0 to never freeze edges
+    private double freezingTolerance = Configuration.DEFAULT_FREEZING_TOLERANCE;
+    // edges whose subdivision points are not moved in the current iteration
+    private boolean[] frozen;
+    private int frozenEdgesCount;
+    // maximal and summed displacement of subdivision points of each edge in the last iteration
+    private double[] maxDisplacements;
+    private double[] displacementSums;
+    // maximal and mean displacement of all subdivision points in the last iteration
+    private double maxDisplacement;
+    private double meanDisplacement;
+    // total force on one subdivision point, reused by iterations on the calling thread so they allocate nothing
+    private final double[] forces = new double[2];
+    private final float[] floatForces = new float[2];
+
     private List<Observer> observers;
 
+    // number of threads used when no pool is set
+    private int parallelism = 1;
+    private ForkJoinPool pool;
+    // maximal number of edges processed by one task
+    private int granularity;
+
+    // set by cancel(), possibly from another thread
+    private volatile boolean cancelled;
+    // maximal duration of a run in nanoseconds, 0 for no limit
+    private long timeout;
+    // System.nanoTime() at which the current run times out
+    private long deadline;
+
     /**
      * Constructor called from GUI with user-specified values.
      *
@@ -88,214 +175,969 @@ public class ForceDirectedEdgeBundling implements Observable {
         if(CYCLES_COUNT > 15 || ITERATIONS_COUNT > 300)
             LOGGER.log(Level.WARNING, "HIGH NUMBER OF ITERATIONS OR CYCLES, ALGORITHM MIGHT RUN TOO LONG...");
 
+        deadline = System.nanoTime() + timeout;
+        final boolean cacheable = cache != null && initialSubdivisionPoints == null
+                && initialCompatibilityGraph == null;
+        final String cacheKey = cacheable ? getCacheKey() : null;
+        if(!loadFromCache(cacheKey)) {
+            // pool is shut down at the end of the run only if it was created by this run
+            ForkJoinPool executor = pool;
+            if(executor == null && parallelism > 1)
+                executor = new ForkJoinPool(parallelism);
+
+            try {
+                runCycles(executor);
+            } catch (CancellationException e) {
+                LOGGER.log(Level.INFO, e.getMessage());
+                notifyCancelled(e.getMessage());
+                throw e;
+            } finally {
+                if(executor != null && executor != pool)
+                    executor.shutdown();
+                METRICS.idle();
+            }
+
+            storeToCache(cacheKey);
+        }
+
+        // build node representation of subdivision points only once, for the observers
+        subdivisionPoints.toEdges(edges);
+
+        // notify GUI that algorithm has finished, to draw the result
+        notifyObservers(0, 0, true);
+
+    }
+
+    /**
+     * Returns key of the result of this instance in {@link BundlingCache}: hash of geometry of edges and of all
+     * parameters the result depends on. Number of threads is not included, as it does not change the result.
+     *
+     * @return
+     */
+    public String getCacheKey(){
+        return new BundlingCache.KeyBuilder()
+                .add(STEP_SIZE)
+                .add(COMPATIBILITY)
+                .add(K)
+                .add(ITERATIONS_COUNT)
+                .add(CYCLES_COUNT)
+                .add(Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT)
+                .add(Configuration.DEFAULT_ITERATIONS_INCREASE_RATE)
+                .add(Configuration.DEFAULT_SUBDIVISION_POINTS_RATE)
+                .add(convergenceTolerance)
+                .add(freezingTolerance)
+                .add(getKernelName())
+                .add(edges)
+                .build();
+    }
+
+    /**
+     * Returns name of the kernel whose rounding errors the result depends on
+     */
+    private String getKernelName(){
+        if(singlePrecision)
+            return floatElectrostaticKernel.getClass().getName();
+        return symmetric ? ScalarElectrostaticKernel.class.getName() : electrostaticKernel.getClass().getName();
+    }
+
+    /**
+     * Loads subdivision points from the cache, if there is a cache and it holds result with given key.
+     * Failure to read the cache is logged and treated as a miss.
+     *
+     * @param cacheKey key or {@code null} if the result is not cached
+     * @return true if subdivision points were loaded
+     */
+    private boolean loadFromCache(String cacheKey){
+        if(cacheKey == null)
+            return false;
+
+        try {
+            SubdivisionBuffer cached = cache.get(cacheKey, edges.length);
+            if(cached == null)
+                return false;
+
+            LOGGER.log(Level.INFO, String.format("Loaded result %s from cache \n", cacheKey));
+            subdivisionPoints = cached;
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read result from cache", e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores current subdivision points into the cache, if there is any. Failure to write is only logged.
+     *
+     * @param cacheKey key or {@code null} if the result is not cached
+     */
+    private void storeToCache(String cacheKey){
+        if(cacheKey == null)
+            return;
+
+        try {
+            cache.put(cacheKey, nodes, edges, subdivisionPoints);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to store result into cache", e);
+        }
+    }
+
+    /**
+     * Performs all cycles of the algorithm, using given pool to calculate new positions of subdivision points or
+     * the calling thread if the pool is {@code null}.
+     *
+     * @param executor
+     */
+    private void runCycles(ForkJoinPool executor){
+        checkCancelled();
         double currentStepSize = STEP_SIZE;
         double currIterationsCount = ITERATIONS_COUNT;
         int currentSubdivisionPointsCount = Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT;
 
         updateEdgeSubdivisions(currentSubdivisionPointsCount);
+        if(initialSubdivisionPoints != null) {
+            for (int cycle = 0; cycle < firstCycle; cycle++) {
+                currentStepSize /= 2;
+                currIterationsCount *= Configuration.DEFAULT_ITERATIONS_INCREASE_RATE;
+                currentSubdivisionPointsCount *= Configuration.DEFAULT_SUBDIVISION_POINTS_RATE;
+            }
+            subdivisionPoints = initialSubdivisionPoints.resample(currentSubdivisionPointsCount);
+            subdivisionPointsReplaced();
+        }
         calculateCompatibilities();
 
-        for (int cycle = 0; cycle < CYCLES_COUNT; cycle++) {
+        for (int cycle = firstCycle; cycle < CYCLES_COUNT; cycle++) {
             LOGGER.log(Level.INFO, String.format("Cycle: %d \n", cycle));
+            final Object cycleEvent = EVENTS.begin(BundlingEvents.Phase.CYCLE);
+            final long cycleStart = METRICS.phaseStarted(BundlingEvents.Phase.CYCLE);
 
-            for (int iter = 0; iter < currIterationsCount; iter++) {
+            final int plannedIterationsCount = (int) Math.ceil(currIterationsCount);
+            double peakMeanDisplacement = 0;
+            int iter = 0;
+            while (iter < plannedIterationsCount) {
+                checkCancelled();
 
-                if(iter % 10 == 0)
-                    LOGGER.log(Level.INFO, String.format("Iteration: %d \n", iter));
+                if(iter % 10 == 0 && LOGGER.isLoggable(Level.FINE))
+                    LOGGER.log(Level.FINE, String.format("Iteration: %d \n", iter));
 
                 notifyObservers(iter, cycle, false);
 
-                List<List<Coordinate>> forces = new ArrayList<>(edges.length);
-                for (int i = 0; i < edges.length ; i++) {
-                    forces.add(calculateTotalForce(i, currentSubdivisionPointsCount, currentStepSize));
+                final Object iterationEvent = EVENTS.begin(BundlingEvents.Phase.ITERATION);
+                final long iterationStart = METRICS.phaseStarted(BundlingEvents.Phase.ITERATION);
+                final long forceEvaluationsCount = getForceEvaluationsCount(currentSubdivisionPointsCount);
+                iterate(executor, currentSubdivisionPointsCount, currentStepSize);
+                METRICS.iterationFinished(cycle, iter, forceEvaluationsCount, iterationStart);
+                EVENTS.endIteration(iterationEvent, cycle, iter, forceEvaluationsCount, maxDisplacement,
+                        meanDisplacement);
+                notifyDisplacement(iter, cycle);
+                // points in single precision are stored only for snapshots which will be published
+                if(snapshotChannel != null && snapshotChannel.isDue()) {
+                    if(floatSubdivisionPoints != null)
+                        floatSubdivisionPoints.store();
+                    snapshotChannel.offer(subdivisionPoints, iter, cycle);
                 }
+                iter++;
 
-                for (int i = 0; i < edges.length; i++) {
-                    for (int j = 0; j < currentSubdivisionPointsCount + 1; j++) {
-                        Coordinate force = forces.get(i).get(j);
-                        edges[i].getSubdivisionPoints().get(j).alterPositionBy(force.getX(), force.getY());
-                    }
+                peakMeanDisplacement = Math.max(peakMeanDisplacement, meanDisplacement);
+                if(meanDisplacement < convergenceTolerance * peakMeanDisplacement) {
+                    LOGGER.log(Level.INFO, String.format("Cycle %d converged after %d of %d iterations \n",
+                            cycle, iter, plannedIterationsCount));
+                    break;
                 }
             }
+            notifyCycleFinished(cycle, iter, plannedIterationsCount - iter);
+            if(freezingTolerance > 0)
+                LOGGER.log(Level.INFO, String.format("Frozen edges at the end of cycle %d: %d of %d \n",
+                        cycle, frozenEdgesCount, edges.length));
 
             currentStepSize /= 2;
             currIterationsCount *= Configuration.DEFAULT_ITERATIONS_INCREASE_RATE;
+            final int cycleSubdivisionPointsCount = currentSubdivisionPointsCount;
             currentSubdivisionPointsCount *= Configuration.DEFAULT_SUBDIVISION_POINTS_RATE;
 
             updateEdgeSubdivisions(currentSubdivisionPointsCount);
+            METRICS.phaseFinished(BundlingEvents.Phase.CYCLE, cycleStart);
+            EVENTS.endCycle(cycleEvent, cycle, iter, cycleSubdivisionPointsCount);
         }
+    }
 
-        // notify GUI that algorithm has finished, to draw the result
-        notifyObservers(0, 0, true);
-
+    /**
+     * Returns number of forces calculated by the next iteration: one spring force and one electrostatic force per
+     * compatible edge for each subdivision point of edges which are not frozen
+     *
+     * @param subdivisionPointsCount
+     * @return
+     */
+    private long getForceEvaluationsCount(int subdivisionPointsCount){
+        final int[] offsets = compatibilityGraph.getOffsets();
+        if(frozenEdgesCount == 0)
+            return ((long) edges.length + offsets[edges.length]) * subdivisionPointsCount;
+
+        long count = 0;
+        for (int i = 0; i < edges.length; i++) {
+            if(!frozen[i])
+                count += 1 + offsets[i + 1] - offsets[i];
+        }
+        return count * subdivisionPointsCount;
     }
 
     /**
-     * Calculates spring force applied on given subdivision point of given edge
-     * F_s = k_p * ||p_1 - p_2||  + k_p * ||p_2 - p_3|| where p_1,2,3 are adjacent subdivision points
+     * Returns number of iterations of a run in which no cycle converges
      *
-     * @param edgeID
-     * @param i
-     * @param kP
      * @return
      */
-    private Coordinate calculateSpringForce(int edgeID, int i, double kP){
-        Node prev = edges[edgeID].getSubdivisionPoints().get(i-1);
-        Node curr = edges[edgeID].getSubdivisionPoints().get(i);
-        Node next = edges[edgeID].getSubdivisionPoints().get(i+1);
+    public int getPlannedIterationsCount(){
+        double currIterationsCount = ITERATIONS_COUNT;
+        int count = 0;
+        for (int cycle = 0; cycle < CYCLES_COUNT; cycle++) {
+            count += (int) Math.ceil(currIterationsCount);
+            currIterationsCount *= Configuration.DEFAULT_ITERATIONS_INCREASE_RATE;
+        }
+        return count;
+    }
 
-        return new Coordinate((prev.getPosition().getX() + next.getPosition().getX() - 2*curr.getPosition().getX()) * kP,
-                (prev.getPosition().getY() + next.getPosition().getY() - 2*curr.getPosition().getY()) * kP);
+    /**
+     * Requests the run to stop. The run stops at the next check, before the next iteration at the latest, and
+     * throws {@link CancellationException}; a run which has not started yet stops before its first iteration.
+     * May be called from any thread.
+     */
+    public void cancel(){
+        cancelled = true;
     }
 
+    public boolean isCancelled() {
+        return cancelled;
+    }
 
     /**
-     * Calculates electrostatic force applied on given edge
-     * F_e = 1 / ||p - q|| where p and q are corresponding subdivision points
+     * Sets maximal duration of a run, after which it stops as if cancelled. 0 (default) for no limit.
      *
-     * @param currentEdgeID
-     * @param i
+     * @param timeout
+     * @param unit
      * @return
      */
-    private Coordinate calculateElectrostaticForce(int currentEdgeID, int i){
-        double x = 0;
-        double y = 0;
-        // constant to ignore forces if they are too small
-        final double EPS = 0.0001;
+    public ForceDirectedEdgeBundling setTimeout(long timeout, TimeUnit unit){
+        if(timeout < 0)
+            throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
 
-        List<Edge> compatibleEdges = edges[currentEdgeID].getCompatibleEdges();
+    /**
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    private void checkCancelled(){
+        if(cancelled)
+            throw new CancellationException("Bundling cancelled");
+        if(timeout > 0 && System.nanoTime() - deadline > 0)
+            throw new CancellationException(String.format("Bundling timed out after %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeout)));
+    }
 
-        for(Edge compatibleEdge : compatibleEdges) {
+    /**
+     * Performs one iteration: moves all subdivision points in the direction of total force applied on them.
+     * Package-private for benchmarks.
+     *
+     * @param executor pool to use or {@code null} to use the calling thread only
+     * @param subdivisionPointsCount
+     * @param stepSize
+     */
+    void iterate(ForkJoinPool executor, int subdivisionPointsCount, double stepSize){
+        if(executor != null)
+            granularity = Math.max(1, edges.length / (4 * executor.getParallelism()));
+
+        // the calling thread uses no capturing lambda and reuses scratch forces, tasks of a pool allocate their own
+        if(floatSubdivisionPoints != null) {
+            if(executor == null)
+                calculateNewFloatPositions(0, edges.length, subdivisionPointsCount, (float) stepSize, floatForces);
+            else
+                forEachEdgeRange(executor, (fromEdgeID, toEdgeID) -> calculateNewFloatPositions(fromEdgeID, toEdgeID,
+                        subdivisionPointsCount, (float) stepSize, new float[2]));
+            floatSubdivisionPoints.swap();
+        } else {
+            if(symmetricForces != null)
+                calculateSymmetricForces(executor, subdivisionPointsCount);
+
+            if(executor == null)
+                calculateNewPositions(0, edges.length, subdivisionPointsCount, stepSize, forces);
+            else
+                forEachEdgeRange(executor, (fromEdgeID, toEdgeID) -> calculateNewPositions(fromEdgeID, toEdgeID,
+                        subdivisionPointsCount, stepSize, new double[2]));
 
-            // list of subdivision points for current edge and its compatible edge
-            List<Node> currentEdgeSubdivisionPoints = edges[currentEdgeID].getSubdivisionPoints();
-            List<Node> compatibleEdgeSubdivisionPoints = compatibleEdge.getSubdivisionPoints();
+            subdivisionPoints.swap();
+        }
+        updateDisplacement(subdivisionPointsCount);
+        if(freezingTolerance > 0)
+            updateFrozenEdges(freezingTolerance * stepSize / STEP_SIZE);
+    }
 
-            double forceX = compatibleEdgeSubdivisionPoints.get(i).getPosition().getX() -
-                    currentEdgeSubdivisionPoints.get(i).getPosition().getX();
-            double forceY = compatibleEdgeSubdivisionPoints.get(i).getPosition().getY() -
-                    currentEdgeSubdivisionPoints.get(i).getPosition().getY();
+    /**
+     * Calculates electrostatic forces on all subdivision points by {@code symmetricForces}. The calling thread
+     * scatters forces of pairs directly, a pool calculates forces of pairs of a block of points at a time
+     * and then gathers them per edge.
+     *
+     * @param executor
+     * @param subdivisionPointsCount
+     */
+    private void calculateSymmetricForces(ForkJoinPool executor, int subdivisionPointsCount){
+        symmetricForces.reset(subdivisionPoints.size());
 
-            // ignore force between current edge and its compatible edge of its too small
-            if(Math.abs(forceX) < EPS || Math.abs(forceY) < EPS)
-                continue;
+        if(executor == null) {
+            symmetricForces.scatterForces(subdivisionPoints, compatiblePointOffsets, frozen, subdivisionPointsCount);
+            return;
+        }
 
-            Coordinate src = compatibleEdgeSubdivisionPoints.get(i).getPosition();
-            double divisor = src.euclideanDistance(currentEdgeSubdivisionPoints.get(i).getPosition());
+        final int blockSize = symmetricForces.getBlockSize(subdivisionPointsCount);
+        for (int i = 1; i < subdivisionPointsCount + 1; i += blockSize) {
+            symmetricForces.setBlock(i, Math.min(subdivisionPointsCount + 1, i + blockSize));
+            forEachEdgeRange(executor, (fromEdgeID, toEdgeID) -> symmetricForces.calculatePairForces(
+                    subdivisionPoints, compatiblePointOffsets, frozen, fromEdgeID, toEdgeID));
+            forEachEdgeRange(executor, (fromEdgeID, toEdgeID) -> symmetricForces.gatherForces(
+                    subdivisionPoints, frozen, fromEdgeID, toEdgeID));
+        }
+    }
 
-            x += forceX / divisor;
-            y += forceY / divisor;
+    /**
+     * Freezes edges whose subdivision points moved less than {@code tolerance} in the last iteration, then unfreezes
+     * all compatible edges of edges which moved at least {@code tolerance}. An edge thus stays active as long as it
+     * or any of its compatible edges moves.
+     *
+     * @param tolerance
+     */
+    private void updateFrozenEdges(double tolerance){
+        for (int i = 0; i < edges.length; i++) {
+            if(maxDisplacements[i] < tolerance)
+                frozen[i] = true;
+        }
 
+        final int[] offsets = compatibilityGraph.getOffsets();
+        final int[] neighbours = compatibilityGraph.getNeighbours();
+        for (int i = 0; i < edges.length; i++) {
+            if(maxDisplacements[i] < tolerance)
+                continue;
+            frozen[i] = false;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                frozen[neighbours[k]] = false;
+            }
         }
 
-        return new Coordinate(x, y);
+        int count = 0;
+        for (int i = 0; i < edges.length; i++) {
+            if(frozen[i])
+                count++;
+        }
+        frozenEdgesCount = count;
     }
 
+    /**
+     * Returns number of edges frozen for the next iteration
+     *
+     * @return
+     */
+    public int getFrozenEdgesCount() {
+        return frozenEdgesCount;
+    }
 
     /**
-     * Calculates total resulting force on given edge
+     * Sets tolerance of freezing of edges: an edge is frozen once none of its subdivision points moves further than
+     * the tolerance in an iteration, and unfrozen once the edge or one of its compatible edges moves further again.
+     * The tolerance applies to the initial step size and is scaled with the step size of later cycles. All edges are
+     * unfrozen at the beginning of each cycle. 0 (default) never freezes edges.
+     *
+     * @param freezingTolerance
+     * @return
+     */
+    public ForceDirectedEdgeBundling setFreezingTolerance(double freezingTolerance){
+        if(freezingTolerance < 0)
+            throw new IllegalArgumentException("Freezing tolerance must not be negative: " + freezingTolerance);
+        this.freezingTolerance = freezingTolerance;
+        return this;
+    }
+
+    /**
+     * Reduces displacements of subdivision points of all edges in the last iteration
      *
-     * @param currentEdgeID
      * @param subdivisionPointsCount
-     * @param stepSize
+     */
+    private void updateDisplacement(int subdivisionPointsCount){
+        double max = 0;
+        double sum = 0;
+        for (int i = 0; i < edges.length; i++) {
+            max = Math.max(max, maxDisplacements[i]);
+            sum += displacementSums[i];
+        }
+        maxDisplacement = max;
+        meanDisplacement = edges.length == 0 ? 0 : sum / ((double) edges.length * subdivisionPointsCount);
+    }
+
+    /**
+     * Returns maximal distance a subdivision point moved in the last iteration
+     *
      * @return
      */
-    private List<Coordinate> calculateTotalForce(int currentEdgeID, int subdivisionPointsCount, double stepSize){
+    public double getMaxDisplacement() {
+        return maxDisplacement;
+    }
 
-        List<Coordinate> forces = new ArrayList<>();
-        // zero force of start-point of edge
-        forces.add(new Coordinate(0,0));
+    /**
+     * Returns mean distance subdivision points moved in the last iteration
+     *
+     * @return
+     */
+    public double getMeanDisplacement() {
+        return meanDisplacement;
+    }
 
-        double kP = K / (edges[currentEdgeID].getLength() * (subdivisionPointsCount + 1));
+    /**
+     * Sets tolerance of convergence: a cycle ends once mean distance subdivision points moved in an iteration
+     * falls below {@code convergenceTolerance} times the largest mean distance in the cycle so far.
+     * Being relative, the tolerance does not depend on the scale of the graph nor on the step size, which halves
+     * after each cycle. Mean is used rather than maximum, as a few points of short edges between dense bundles
+     * keep moving until the end of a cycle. 0 (default) performs all iterations.
+     *
+     * @param convergenceTolerance
+     * @return
+     */
+    public ForceDirectedEdgeBundling setConvergenceTolerance(double convergenceTolerance){
+        if(convergenceTolerance < 0 || convergenceTolerance >= 1)
+            throw new IllegalArgumentException("Convergence tolerance must be in [0, 1): " + convergenceTolerance);
+        this.convergenceTolerance = convergenceTolerance;
+        return this;
+    }
 
-        for (int currentSubdivisionPoint = 1; currentSubdivisionPoint < (subdivisionPointsCount + 1); currentSubdivisionPoint++) {
+    /**
+     * Starts runs at given cycle from given subdivision points instead of straight edges. The points are resampled to
+     * the number of subdivision points of that cycle; step size and number of iterations are those of that cycle too.
+     * Results of warm-started runs are not cached.
+     *
+     * @param initialSubdivisionPoints points of all edges, any number per edge
+     * @param firstCycle cycle in [0, CYCLES_COUNT]
+     * @return
+     */
+    ForceDirectedEdgeBundling setWarmStart(SubdivisionBuffer initialSubdivisionPoints, int firstCycle){
+        if(initialSubdivisionPoints.getEdgesCount() != edges.length)
+            throw new IllegalArgumentException(String.format("Subdivision points of %d edges given for %d edges",
+                    initialSubdivisionPoints.getEdgesCount(), edges.length));
+        if(firstCycle < 0 || firstCycle > CYCLES_COUNT)
+            throw new IllegalArgumentException("First cycle must be in [0, " + CYCLES_COUNT + "]: " + firstCycle);
+        this.initialSubdivisionPoints = initialSubdivisionPoints;
+        this.firstCycle = firstCycle;
+        return this;
+    }
 
-            Coordinate springForce = calculateSpringForce(currentEdgeID, currentSubdivisionPoint, kP);
-            Coordinate electroStaticForce = calculateElectrostaticForce(currentEdgeID, currentSubdivisionPoint);
+    /**
+     * Uses given compatible edges instead of scoring all pairs of edges, {@code null} (default) to score them.
+     * Results of runs with given compatible edges are not cached.
+     *
+     * @param compatibilityGraph graph of all edges
+     * @return
+     */
+    ForceDirectedEdgeBundling setCompatibilityGraph(CompatibilityGraph compatibilityGraph){
+        if(compatibilityGraph != null && compatibilityGraph.getEdgesCount() != edges.length)
+            throw new IllegalArgumentException(String.format("Compatibility graph of %d edges given for %d edges",
+                    compatibilityGraph.getEdgesCount(), edges.length));
+        this.initialCompatibilityGraph = compatibilityGraph;
+        return this;
+    }
 
-            double totalForceX = stepSize * (springForce.getX() + electroStaticForce.getX());
-            double totalForceY = stepSize * (springForce.getY() + electroStaticForce.getY());
+    /**
+     * Sets number of threads used to calculate forces, 1 (the calling thread only) by default.
+     * A pool with given parallelism is created for each run, unless a pool is set by {@link #setPool(ForkJoinPool)}.
+     * Results do not depend on the number of threads.
+     *
+     * @param parallelism
+     * @return
+     */
+    public ForceDirectedEdgeBundling setParallelism(int parallelism){
+        if(parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
 
-            forces.add(new Coordinate(totalForceX, totalForceY));
+    /**
+     * Sets pool used to calculate forces. The pool is not shut down after the run.
+     *
+     * @param pool
+     * @return
+     */
+    public ForceDirectedEdgeBundling setPool(ForkJoinPool pool){
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Sets whether electrostatic forces are calculated by SIMD instructions, see
+     * {@link ElectrostaticKernels#vectorized()}. Vectorized results differ from the scalar ones by rounding errors.
+     *
+     * @param vectorized
+     * @return
+     */
+    public ForceDirectedEdgeBundling setVectorized(boolean vectorized){
+        this.electrostaticKernel = vectorized ? ElectrostaticKernels.vectorized() : ElectrostaticKernels.scalar();
+        this.floatElectrostaticKernel = vectorized ? ElectrostaticKernels.vectorizedFloat()
+                : ElectrostaticKernels.scalarFloat();
+        return this;
+    }
+
+    /**
+     * Sets whether subdivision points are moved in single precision: positions, spring and electrostatic forces are
+     * floats, which halves memory traffic of iterations and doubles the number of compatible edges processed at once
+     * by the vectorized kernel. Positions are rounded to floats at the start of each cycle and copied back into
+     * doubles for resampling, so the result is in {@link #getSubdivisionPoints()} as usual. Compatibility scores are
+     * calculated in double precision, so compatible edges are the same in both modes; they are stored as floats
+     * anyway. {@link #setSymmetric(boolean)} has no effect in single precision. For the drift of results against
+     * double precision see the class description.
+     *
+     * @param singlePrecision
+     * @return
+     */
+    public ForceDirectedEdgeBundling setSinglePrecision(boolean singlePrecision){
+        this.singlePrecision = singlePrecision;
+        return this;
+    }
+
+    /**
+     * Sets whether electrostatic force between each pair of corresponding subdivision points of compatible edges is
+     * calculated only once and applied to both points, see {@link SymmetricElectrostaticForces}. Results are the
+     * same as of the scalar kernel, which is replaced; {@link #setVectorized(boolean)} has no effect.
+     *
+     * @param symmetric
+     * @return
+     */
+    public ForceDirectedEdgeBundling setSymmetric(boolean symmetric){
+        this.symmetric = symmetric;
+        return this;
+    }
+
+    /**
+     * Sets channel publishing intermediate subdivision points during the run, {@code null} (none) by default
+     *
+     * @param snapshotChannel
+     * @return
+     */
+    public ForceDirectedEdgeBundling setSnapshotChannel(SnapshotChannel snapshotChannel){
+        this.snapshotChannel = snapshotChannel;
+        return this;
+    }
+
+    /**
+     * Sets cache of results, {@code null} (no cache) by default
+     *
+     * @param cache
+     * @return
+     */
+    public ForceDirectedEdgeBundling setCache(BundlingCache cache){
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Action performed on a range of edges
+     */
+    private interface EdgeRangeAction {
+
+        void run(int fromEdgeID, int toEdgeID);
+    }
+
+    /**
+     * Performs given action on all edges, using given pool or the calling thread if the pool is {@code null}
+     *
+     * @param executor
+     * @param action
+     */
+    private void forEachEdgeRange(ForkJoinPool executor, EdgeRangeAction action){
+        if(executor == null)
+            action.run(0, edges.length);
+        else
+            executor.invoke(new EdgeRangeTask(0, edges.length, action));
+    }
+
+    /**
+     * Task performing an action on a range of edges, splitting the range among threads.
+     */
+    @SuppressWarnings("serial")
+    private class EdgeRangeTask extends RecursiveAction {
+
+        private final int fromEdgeID;
+        private final int toEdgeID;
+        private final EdgeRangeAction action;
 
+        EdgeRangeTask(int fromEdgeID, int toEdgeID, EdgeRangeAction action) {
+            this.fromEdgeID = fromEdgeID;
+            this.toEdgeID = toEdgeID;
+            this.action = action;
         }
 
-        // zero force of end-point of edge
-        forces.add(new Coordinate(0,0));
-        return forces;
+        @Override
+        protected void compute() {
+            if(toEdgeID - fromEdgeID <= granularity) {
+                action.run(fromEdgeID, toEdgeID);
+                return;
+            }
+            int middle = (fromEdgeID + toEdgeID) >>> 1;
+            invokeAll(new EdgeRangeTask(fromEdgeID, middle, action),
+                    new EdgeRangeTask(middle, toEdgeID, action));
+        }
     }
 
+    /**
+     * Moves subdivision points of edges in range [{@code fromEdgeID}, {@code toEdgeID}) in the direction of total
+     * force applied on them. New positions are written into the back buffer of {@code subdivisionPoints},
+     * only current positions are read.
+     *
+     * @param fromEdgeID
+     * @param toEdgeID
+     * @param subdivisionPointsCount
+     * @param stepSize
+     * @param forces scratch array of length 2, not shared with other threads
+     */
+    private void calculateNewPositions(int fromEdgeID, int toEdgeID, int subdivisionPointsCount, double stepSize,
+                                       double[] forces){
+        double[] x = subdivisionPoints.getX();
+        double[] y = subdivisionPoints.getY();
+        double[] nextX = subdivisionPoints.getNextX();
+        double[] nextY = subdivisionPoints.getNextY();
+        double[] lengths = geometry.getLengths();
+
+        for (int i = fromEdgeID; i < toEdgeID; i++) {
+            final int offset = subdivisionPoints.getOffset(i);
+            if(frozen[i]) {
+                // keep current positions in the back buffer
+                System.arraycopy(x, offset + 1, nextX, offset + 1, subdivisionPointsCount);
+                System.arraycopy(y, offset + 1, nextY, offset + 1, subdivisionPointsCount);
+                maxDisplacements[i] = 0;
+                displacementSums[i] = 0;
+                continue;
+            }
+
+            final double kP = K / (lengths[i] * (subdivisionPointsCount + 1));
+            double max = 0;
+            double sum = 0;
+
+            for (int j = 1; j < subdivisionPointsCount + 1; j++) {
+                if(symmetricForces == null)
+                    calculateTotalForce(i, j, kP, stepSize, forces);
+                else
+                    calculateTotalForce(offset + j, kP, symmetricForces.getForcesX()[offset + j],
+                            symmetricForces.getForcesY()[offset + j], stepSize, forces);
+                nextX[offset + j] = x[offset + j] + forces[0];
+                nextY[offset + j] = y[offset + j] + forces[1];
+
+                final double displacement = Math.sqrt(forces[0] * forces[0] + forces[1] * forces[1]);
+                sum += displacement;
+                if(displacement > max)
+                    max = displacement;
+            }
+            maxDisplacements[i] = max;
+            displacementSums[i] = sum;
+        }
+    }
 
     /**
-     * Calculates new list of subdivision points for each edge, based on its current list of subdivision points
+     * Calculates new single precision positions of subdivision points of given range of edges, as
+     * {@link #calculateNewPositions(int, int, int, double, double[])} does in double precision
      *
-     * @param newSubdivisionPointsCount
+     * @param fromEdgeID
+     * @param toEdgeID
+     * @param subdivisionPointsCount
+     * @param stepSize
+     * @param forces scratch array of length 2, not shared with other threads
+     */
+    private void calculateNewFloatPositions(int fromEdgeID, int toEdgeID, int subdivisionPointsCount,
+                                            float stepSize, float[] forces){
+        float[] x = floatSubdivisionPoints.getX();
+        float[] y = floatSubdivisionPoints.getY();
+        float[] nextX = floatSubdivisionPoints.getNextX();
+        float[] nextY = floatSubdivisionPoints.getNextY();
+        double[] lengths = geometry.getLengths();
+        int[] compatibleEdgesOffsets = compatibilityGraph.getOffsets();
+
+        for (int i = fromEdgeID; i < toEdgeID; i++) {
+            final int offset = floatSubdivisionPoints.getOffset(i);
+            if(frozen[i]) {
+                // keep current positions in the back buffer
+                System.arraycopy(x, offset + 1, nextX, offset + 1, subdivisionPointsCount);
+                System.arraycopy(y, offset + 1, nextY, offset + 1, subdivisionPointsCount);
+                maxDisplacements[i] = 0;
+                displacementSums[i] = 0;
+                continue;
+            }
+
+            final float kP = (float) (K / (lengths[i] * (subdivisionPointsCount + 1)));
+            double max = 0;
+            double sum = 0;
+
+            for (int j = 1; j < subdivisionPointsCount + 1; j++) {
+                final int p = offset + j;
+                forces[0] = (x[p - 1] + x[p + 1] - 2 * x[p]) * kP;
+                forces[1] = (y[p - 1] + y[p + 1] - 2 * y[p]) * kP;
+                floatElectrostaticKernel.addForce(x, y, p, j, compatiblePointOffsets, compatibleEdgesOffsets[i],
+                        compatibleEdgesOffsets[i + 1], forces);
+                forces[0] *= stepSize;
+                forces[1] *= stepSize;
+
+                nextX[p] = x[p] + forces[0];
+                nextY[p] = y[p] + forces[1];
+
+                final double displacement = Math.sqrt(forces[0] * forces[0] + forces[1] * forces[1]);
+                sum += displacement;
+                if(displacement > max)
+                    max = displacement;
+            }
+            maxDisplacements[i] = max;
+            displacementSums[i] = sum;
+        }
+    }
+
+    /**
+     * Returns current subdivision points of all edges
+     *
+     * @return
+     */
+    public SubdivisionBuffer getSubdivisionPoints() {
+        return subdivisionPoints;
+    }
+
+    /**
+     * Calculates spring force applied on given subdivision point of given edge and stores it into {@code force}
+     * F_s = k_p * ||p_1 - p_2||  + k_p * ||p_2 - p_3|| where p_1,2,3 are adjacent subdivision points
+     *
+     * @param p index of subdivision point in the buffer
+     * @param kP
+     * @param force
      */
-    private void updateEdgeSubdivisions(int newSubdivisionPointsCount){
+    private void calculateSpringForce(int p, double kP, double[] force){
+        double[] x = subdivisionPoints.getX();
+        double[] y = subdivisionPoints.getY();
 
-        for (Edge edge : edges) {
+        force[0] = (x[p - 1] + x[p + 1] - 2 * x[p]) * kP;
+        force[1] = (y[p - 1] + y[p + 1] - 2 * y[p]) * kP;
+    }
 
-            List<Node> subdivisionPoints = edge.getSubdivisionPoints();
 
-            // if edge has not yet been divided, add only its midpoint
-            if (newSubdivisionPointsCount == 1) {
-                subdivisionPoints.add(edge.getFrom());
-                Coordinate midpoint = edge.getMidpoint();
-                subdivisionPoints.add(new Node(midpoint.getX(), midpoint.getY()));
-                subdivisionPoints.add(edge.getTo());
-            } else {
+    /**
+     * Calculates electrostatic force applied on given subdivision point of given edge and adds it to {@code force}
+     * F_e = 1 / ||p - q|| where p and q are corresponding subdivision points
+     *
+     * @param currentEdgeID
+     * @param i
+     * @param force
+     */
+    private void calculateElectrostaticForce(int currentEdgeID, int i, double[] force){
+        final int[] compatibleEdgesOffsets = compatibilityGraph.getOffsets();
 
+        electrostaticKernel.addForce(subdivisionPoints.getX(), subdivisionPoints.getY(),
+                subdivisionPoints.getOffset(currentEdgeID) + i, i, compatiblePointOffsets,
+                compatibleEdgesOffsets[currentEdgeID], compatibleEdgesOffsets[currentEdgeID + 1], force);
+    }
 
-                List<Node> newEdgeSubdivisions = new ArrayList<>();
-                newEdgeSubdivisions.add(edge.getFrom());
 
-                // get length of segment in current iteration
-                final double segmentLength = edge.getCurvedLength() / (newSubdivisionPointsCount + 1);
-                double currSegmentLength = segmentLength;
+    /**
+     * Calculates total resulting force on given subdivision point of given edge and stores it into {@code force}
+     *
+     * @param currentEdgeID
+     * @param currentSubdivisionPoint
+     * @param kP spring constant of the edge
+     * @param stepSize
+     * @param force
+     */
+    private void calculateTotalForce(int currentEdgeID, int currentSubdivisionPoint, double kP, double stepSize,
+                                     double[] force){
 
-                for (int j = 1; j < subdivisionPoints.size(); j++) {
+        calculateSpringForce(subdivisionPoints.getOffset(currentEdgeID) + currentSubdivisionPoint, kP, force);
+        calculateElectrostaticForce(currentEdgeID, currentSubdivisionPoint, force);
 
-                    // get length of segment in previous iteration
-                    double oldSegmentLength = subdivisionPoints.get(j).getPosition().euclideanDistance(subdivisionPoints.get(j - 1).getPosition());
+        force[0] *= stepSize;
+        force[1] *= stepSize;
+    }
 
-                    while (oldSegmentLength > currSegmentLength) {
+    /**
+     * Calculates total resulting force on given subdivision point with already calculated electrostatic force and
+     * stores it into {@code force}
+     *
+     * @param p index of subdivision point in the buffer
+     * @param kP spring constant of the edge
+     * @param electrostaticForceX
+     * @param electrostaticForceY
+     * @param stepSize
+     * @param force
+     */
+    private void calculateTotalForce(int p, double kP, double electrostaticForceX, double electrostaticForceY,
+                                     double stepSize, double[] force){
 
-                        // calculate fraction of segment lengths between current and previous iteration
-                        double percentage = currSegmentLength / oldSegmentLength;
-                        double x = subdivisionPoints.get(j - 1).getPosition().getX();
-                        double y = subdivisionPoints.get(j - 1).getPosition().getY();
+        calculateSpringForce(p, kP, force);
+        force[0] += electrostaticForceX;
+        force[1] += electrostaticForceY;
 
-                        x += percentage * (subdivisionPoints.get(j).getPosition().getX() - x);
-                        y += percentage * (subdivisionPoints.get(j).getPosition().getY() - y);
+        force[0] *= stepSize;
+        force[1] *= stepSize;
+    }
 
-                        newEdgeSubdivisions.add(new Node(x, y));
 
-                        oldSegmentLength -= currSegmentLength;
-                        currSegmentLength = segmentLength;
-                    }
+    /**
+     * Calculates new subdivision points for each edge, based on its current subdivision points.
+     * Package-private for benchmarks.
+     *
+     * @param newSubdivisionPointsCount
+     */
+    void updateEdgeSubdivisions(int newSubdivisionPointsCount){
+
+        // if edges have not yet been divided, add only their midpoints
+        if (subdivisionPoints == null) {
+            subdivisionPoints = new SubdivisionBuffer(edges);
+            geometry = new EdgeGeometry(edges);
+            maxDisplacements = new double[edges.length];
+            displacementSums = new double[edges.length];
+            frozen = new boolean[edges.length];
+        } else {
+            final Object event = EVENTS.begin(BundlingEvents.Phase.RESAMPLING);
+            final long start = METRICS.phaseStarted(BundlingEvents.Phase.RESAMPLING);
+            if(floatSubdivisionPoints != null)
+                floatSubdivisionPoints.store();
+            subdivisionPoints = subdivisionPoints.resample(newSubdivisionPointsCount);
+            METRICS.phaseFinished(BundlingEvents.Phase.RESAMPLING, start);
+            EVENTS.endResampling(event, newSubdivisionPointsCount, subdivisionPoints.size());
+            Arrays.fill(frozen, false);
+        }
+        subdivisionPointsReplaced();
+    }
 
-                    currSegmentLength -= oldSegmentLength;
-                }
+    /**
+     * Derives single precision points, offsets of points of compatible edges and metrics from a new
+     * {@code subdivisionPoints}
+     */
+    private void subdivisionPointsReplaced(){
+        frozenEdgesCount = 0;
+        floatSubdivisionPoints = singlePrecision ? new FloatSubdivisionBuffer(subdivisionPoints) : null;
+        updateCompatiblePointOffsets();
+        updateSubdivisionMetrics();
+    }
 
-                newEdgeSubdivisions.add(edge.getTo());
+    private void updateSubdivisionMetrics(){
+        long bytes = subdivisionPoints.getHeapBytes();
+        if(floatSubdivisionPoints != null)
+            bytes += floatSubdivisionPoints.getHeapBytes();
+        if(compatiblePointOffsets != null)
+            bytes += 4L * compatiblePointOffsets.length;
+        METRICS.subdivisionsUpdated(subdivisionPoints.getSubdivisionPointsCount(), bytes);
+    }
 
-                edge.setSubdivisionPoints(newEdgeSubdivisions);
+    private void updateCompatiblePointOffsets(){
+        if(compatibilityGraph == null)
+            return;
 
-            }
+        final int[] compatibleEdges = compatibilityGraph.getNeighbours();
+        if(compatiblePointOffsets == null)
+            compatiblePointOffsets = new int[compatibleEdges.length];
+        for (int k = 0; k < compatibleEdges.length; k++) {
+            compatiblePointOffsets[k] = subdivisionPoints.getOffset(compatibleEdges[k]);
         }
     }
 
     /**
-     * Determines the list of compatible edges for each edge
+     * Determines compatible edges of each edge and stores them into {@code compatibilityGraph}.
+     * A graph set by {@link #setCompatibilityGraph(CompatibilityGraph)} is used as it is.
+     * If there is a cache and the threshold is not below {@link Configuration#DEFAULT_COMPATIBILITY_FLOOR}, the graph
+     * is cut from {@link CompatibilityScoreStore} of the cache. Otherwise pairs are scored by
+     * {@link CompatibilityScorer} from cached geometry of edges.
+     * Only pairs found by {@link EdgeMidpointIndex} are scored, unless the threshold lets every pair be compatible.
+     * Compatible edges are not stored into {@link Edge#getCompatibleEdges()}.
+     * Package-private for benchmarks.
+     */
+    void calculateCompatibilities(){
+        final Object event = EVENTS.begin(BundlingEvents.Phase.COMPATIBILITY);
+        final long start = METRICS.phaseStarted(BundlingEvents.Phase.COMPATIBILITY);
+        compatibilityGraph = initialCompatibilityGraph != null ? initialCompatibilityGraph : loadCompatibilities();
+        if(compatibilityGraph == null)
+            compatibilityGraph = scoreCompatibilities();
+        METRICS.phaseFinished(BundlingEvents.Phase.COMPATIBILITY, start);
+
+        final long pairsCount = compatibilityGraph.getPairsCount();
+        METRICS.compatibilitiesDetermined(pairsCount);
+        EVENTS.endCompatibility(event, edges.length, pairsCount);
+
+        symmetricForces = symmetric ? new SymmetricElectrostaticForces(compatibilityGraph) : null;
+        updateCompatiblePointOffsets();
+        updateSubdivisionMetrics();
+    }
+
+    /**
+     * Cuts compatibility graph from the store of compatibility scores of the cache, if possible.
+     * Failure to read or write the store is logged and treated as a miss.
+     *
+     * @return compatibility graph or {@code null}
      */
-    private void calculateCompatibilities(){
-        for (int i = 0; i < edges.length - 1; i++) {
-            for (int j = i + 1; j < edges.length; j++) {
-                if(edges[i].compatible(edges[j], COMPATIBILITY)){
-                    edges[i].addCompatibleEdge(edges[j]);
-                    edges[j].addCompatibleEdge(edges[i]);
+    private CompatibilityGraph loadCompatibilities(){
+        final double floor = Configuration.DEFAULT_COMPATIBILITY_FLOOR;
+        if(cache == null || COMPATIBILITY < floor || COMPATIBILITY > 1)
+            return null;
+
+        try {
+            CompatibilityScoreStore store = cache.getScoreStore(edges, floor, this::checkCancelled);
+            return store.toGraph(COMPATIBILITY);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to use stored compatibility scores", e);
+            return null;
+        }
+    }
+
+    private CompatibilityGraph scoreCompatibilities(){
+        CompatibilityGraph.Builder builder = new CompatibilityGraph.Builder(edges.length);
+        CompatibilityScorer scorer = new CompatibilityScorer(geometry);
+
+        if(COMPATIBILITY <= 0 || COMPATIBILITY > 1){
+            for (int i = 0; i < edges.length - 1; i++) {
+                checkCancelled();
+                for (int j = i + 1; j < edges.length; j++) {
+                    addIfCompatible(builder, scorer, i, j);
                 }
             }
+        } else {
+            EdgeMidpointIndex index = new EdgeMidpointIndex(geometry, COMPATIBILITY);
+            for (int i = 0; i < edges.length - 1; i++) {
+                if(i % 64 == 0)
+                    checkCancelled();
+                final int candidatesCount = index.findCandidates(i);
+                final int[] candidates = index.getCandidates();
+                for (int k = 0; k < candidatesCount; k++) {
+                    addIfCompatible(builder, scorer, i, candidates[k]);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    private void addIfCompatible(CompatibilityGraph.Builder builder, CompatibilityScorer scorer, int i, int j){
+        double score = scorer.score(i, j);
+        if(score >= COMPATIBILITY)
+            builder.addPair(i, j, score);
+    }
+
+    /**
+     * Returns compatible edges of all edges, available once the run has started
+     *
+     * @return
+     */
+    public CompatibilityGraph getCompatibilityGraph() {
+        return compatibilityGraph;
+    }
+
+    private void notifyDisplacement(int iteration, int cycle){
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).updateDisplacement(iteration, cycle, maxDisplacement, meanDisplacement);
+        }
+    }
+
+    private void notifyCycleFinished(int cycle, int iterationsCount, int savedIterationsCount){
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).cycleFinished(cycle, iterationsCount, savedIterationsCount);
+        }
+    }
+
+    private void notifyCancelled(String reason){
+        for(Observer observer : observers){
+            observer.cancelled(reason);
         }
     }
 
@@ -306,11 +1148,12 @@ public class ForceDirectedEdgeBundling implements Observable {
 
     @Override
     public void notifyObservers(int iteration, int cycle, boolean finished) {
-        for(Observer observer : observers){
+        // indexed, as iterator of the list would be allocated every iteration
+        for (int i = 0; i < observers.size(); i++) {
             if(finished)
-                observer.finished(nodes, edges);
+                observers.get(i).finished(nodes, edges);
             else
-                observer.updateProcessInfo(iteration, cycle);
+                observers.get(i).updateProcessInfo(iteration, cycle);
         }
     }
 }
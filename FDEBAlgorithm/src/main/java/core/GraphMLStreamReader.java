@@ -0,0 +1,168 @@
+package core;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads nodes and edges of a GraphML document in a single pass over a StAX stream, without building any graph
+ * structure. Node attributes 'x', 'y' and 'tooltip' are kept, other attributes are skipped.
+ * Read data is stored in arrays in document order, valid up to {@link #getNodesCount()} and
+ * {@link #getEdgesCount()} respectively.
+ */
+class GraphMLStreamReader {
+
+    private int nodesCount;
+    private int[] nodeIDs = new int[256];
+    private double[] nodeX = new double[256];
+    private double[] nodeY = new double[256];
+    private String[] nodeTooltips = new String[256];
+
+    private int edgesCount;
+    private int[] edgeIDs = new int[256];
+    private int[] edgeSources = new int[256];
+    private int[] edgeTargets = new int[256];
+
+    // attribute names of keys declared by <key> elements, by key ID
+    private final Map<String, String> keyNames = new HashMap<>();
+
+    /**
+     * Reads whole document from given stream. The stream is not closed.
+     *
+     * @param is
+     * @throws IOException if the document is malformed or an ID is not an integer
+     */
+    void read(InputStream is) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                        continue;
+
+                    switch (reader.getLocalName()) {
+                        case "key":
+                            keyNames.put(reader.getAttributeValue(null, "id"),
+                                    reader.getAttributeValue(null, "attr.name"));
+                            break;
+                        case "node":
+                            readNode(reader);
+                            break;
+                        case "edge":
+                            readEdge(reader);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Malformed GraphML input: " + e.getMessage(), e);
+        }
+    }
+
+    private void readNode(XMLStreamReader reader) throws XMLStreamException {
+        if (nodesCount == nodeIDs.length) {
+            nodeIDs = Arrays.copyOf(nodeIDs, 2 * nodesCount);
+            nodeX = Arrays.copyOf(nodeX, 2 * nodesCount);
+            nodeY = Arrays.copyOf(nodeY, 2 * nodesCount);
+            nodeTooltips = Arrays.copyOf(nodeTooltips, 2 * nodesCount);
+        }
+        nodeIDs[nodesCount] = Integer.parseInt(reader.getAttributeValue(null, "id"));
+        nodeX[nodesCount] = Double.NaN;
+        nodeY[nodesCount] = Double.NaN;
+        nodeTooltips[nodesCount] = null;
+
+        // read <data> children until </node>
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = keyNames.get(reader.getAttributeValue(null, "key"));
+            String value = reader.getElementText();
+            if ("x".equals(name))
+                nodeX[nodesCount] = Double.parseDouble(value);
+            else if ("y".equals(name))
+                nodeY[nodesCount] = Double.parseDouble(value);
+            else if ("tooltip".equals(name))
+                nodeTooltips[nodesCount] = value;
+        }
+        nodesCount++;
+    }
+
+    private void readEdge(XMLStreamReader reader) throws XMLStreamException {
+        if (edgesCount == edgeIDs.length) {
+            edgeIDs = Arrays.copyOf(edgeIDs, 2 * edgesCount);
+            edgeSources = Arrays.copyOf(edgeSources, 2 * edgesCount);
+            edgeTargets = Arrays.copyOf(edgeTargets, 2 * edgesCount);
+        }
+        String id = reader.getAttributeValue(null, "id");
+        // edges without ID are numbered in document order
+        edgeIDs[edgesCount] = id == null ? edgesCount : Integer.parseInt(id);
+        edgeSources[edgesCount] = Integer.parseInt(reader.getAttributeValue(null, "source"));
+        edgeTargets[edgesCount] = Integer.parseInt(reader.getAttributeValue(null, "target"));
+
+        // skip <data> children until </edge>
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            reader.getElementText();
+        }
+        edgesCount++;
+    }
+
+    int getNodesCount() {
+        return nodesCount;
+    }
+
+    int[] getNodeIDs() {
+        return nodeIDs;
+    }
+
+    /**
+     * Returns values of 'x' attribute of nodes, NaN where missing
+     * @return
+     */
+    double[] getNodeX() {
+        return nodeX;
+    }
+
+    /**
+     * Returns values of 'y' attribute of nodes, NaN where missing
+     * @return
+     */
+    double[] getNodeY() {
+        return nodeY;
+    }
+
+    /**
+     * Returns values of 'tooltip' attribute of nodes, null where missing
+     * @return
+     */
+    String[] getNodeTooltips() {
+        return nodeTooltips;
+    }
+
+    int getEdgesCount() {
+        return edgesCount;
+    }
+
+    int[] getEdgeIDs() {
+        return edgeIDs;
+    }
+
+    int[] getEdgeSources() {
+        return edgeSources;
+    }
+
+    int[] getEdgeTargets() {
+        return edgeTargets;
+    }
+}
@@ -0,0 +1,423 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of a graph with nodes already projected to canvas coordinates and, optionally,
+ * bundled subdivision points of its edges. The file is read through a memory-mapped buffer; accessors read
+ * values directly from the mapping and create no objects per node, edge or point.
+ *
+ * Layout (little-endian, sections aligned to 8 bytes):
+ * header - int magic 'FDEB', int version, int nodes count, int edges count, int points count (0 if the snapshot
+ *          holds no subdivision points), int subdivision points count, int length of names in bytes, int flags,
+ *          int parser version, int 0, long size and long last modification time in milliseconds of the source file
+ *          (source fields are 0 unless flags contain SOURCE, see {@link Source})
+ * georeference - canvas x, y of top-left and bottom-right corner and their latitude, longitude, 8 doubles in order
+ *          of setters of {@link IOParser.LatLongConverter} (present only if flags contain GEOREFERENCE)
+ * nodes  - double x, double y of each node
+ * edges  - int index of from-node, int index of to-node of each edge
+ * points - int offset of first point of each edge and total points count, double x, double y of each point
+ *          (present only if points count is not 0)
+ * names  - int offset of name of each node and total length, UTF-8 bytes of all names
+ */
+public class GraphSnapshot {
+
+    public static final int MAGIC = 0x42454446;
+    public static final int VERSION = 3;
+    public static final String EXTENSION = ".fdeb";
+
+    private static final int HEADER_SIZE = 56;
+    private static final int GEOREFERENCE = 1;
+    private static final int SOURCE = 2;
+    private static final int GEOREFERENCE_LENGTH = 8;
+
+    private final MappedByteBuffer buffer;
+    private final int nodesCount;
+    private final int edgesCount;
+    private final int pointsCount;
+    private final int subdivisionPointsCount;
+    private final int flags;
+
+    private final int nodesPosition;
+    private final int edgesPosition;
+    private final int pointOffsetsPosition;
+    private final int pointsPosition;
+    private final int nameOffsetsPosition;
+    private final int namesPosition;
+
+    /**
+     * Identifies the file a snapshot was parsed from by its size and last modification time, together with the
+     * version of the parser which projected its nodes. A snapshot is up to date if its source equals the current one.
+     */
+    static final class Source {
+
+        private final long size;
+        private final long lastModified;
+        private final int parserVersion;
+
+        Source(long size, long lastModified, int parserVersion) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.parserVersion = parserVersion;
+        }
+
+        /**
+         * Returns current source of given file parsed by given version of the parser
+         *
+         * @param file
+         * @param parserVersion
+         * @return
+         * @throws IOException
+         */
+        static Source of(Path file, int parserVersion) throws IOException {
+            return new Source(Files.size(file), Files.getLastModifiedTime(file).toMillis(), parserVersion);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Source))
+                return false;
+            Source source = (Source) other;
+            return size == source.size && lastModified == source.lastModified
+                    && parserVersion == source.parserVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Long.hashCode(size) + Long.hashCode(lastModified)) + parserVersion;
+        }
+    }
+
+    private GraphSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a graph snapshot");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported graph snapshot version " + buffer.getInt(4));
+
+        nodesCount = buffer.getInt(8);
+        edgesCount = buffer.getInt(12);
+        pointsCount = buffer.getInt(16);
+        subdivisionPointsCount = buffer.getInt(20);
+        final int namesLength = buffer.getInt(24);
+        flags = buffer.getInt(28);
+
+        nodesPosition = HEADER_SIZE + ((flags & GEOREFERENCE) != 0 ? 8 * GEOREFERENCE_LENGTH : 0);
+        edgesPosition = nodesPosition + 16 * nodesCount;
+        pointOffsetsPosition = edgesPosition + 8 * edgesCount;
+        pointsPosition = pointsCount == 0 ? pointOffsetsPosition : align(pointOffsetsPosition + 4 * (edgesCount + 1));
+        nameOffsetsPosition = pointsPosition + 16 * pointsCount;
+        namesPosition = nameOffsetsPosition + 4 * (nodesCount + 1);
+
+        if ((long) namesPosition + namesLength != buffer.capacity())
+            throw new IOException("Graph snapshot is truncated or corrupted");
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    /**
+     * Maps snapshot stored in given file
+     *
+     * @param path
+     * @return
+     * @throws IOException if file cannot be read or is not a snapshot of supported version
+     */
+    public static GraphSnapshot map(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Graph snapshot larger than 2 GB: " + path);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new GraphSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Writes snapshot of given graph into given file.
+     *
+     * @param path
+     * @param nodes nodes in canvas coordinates
+     * @param edges edges between {@code nodes}
+     * @param subdivisionPoints bundled subdivision points of {@code edges} or {@code null}
+     * @throws IOException
+     */
+    public static void write(Path path, Node[] nodes, Edge[] edges, SubdivisionBuffer subdivisionPoints)
+            throws IOException {
+        write(path, nodes, edges, subdivisionPoints, null);
+    }
+
+    /**
+     * Writes snapshot of given graph and its georeference into given file.
+     *
+     * @param path
+     * @param nodes nodes in canvas coordinates
+     * @param edges edges between {@code nodes}
+     * @param subdivisionPoints bundled subdivision points of {@code edges} or {@code null}
+     * @param georeference reference of canvas coordinates to latitude and longitude, see
+     *                     {@link IOParser.LatLongConverter#getReference()}, or {@code null}
+     * @throws IOException
+     */
+    static void write(Path path, Node[] nodes, Edge[] edges, SubdivisionBuffer subdivisionPoints,
+                      double[] georeference) throws IOException {
+        write(path, nodes, edges, subdivisionPoints, georeference, null);
+    }
+
+    /**
+     * Writes snapshot of given graph parsed from given source, together with its georeference, into given file.
+     *
+     * @param path
+     * @param nodes nodes in canvas coordinates
+     * @param edges edges between {@code nodes}
+     * @param subdivisionPoints bundled subdivision points of {@code edges} or {@code null}
+     * @param georeference reference of canvas coordinates to latitude and longitude or {@code null}
+     * @param source file the graph was parsed from or {@code null}
+     * @throws IOException
+     */
+    static void write(Path path, Node[] nodes, Edge[] edges, SubdivisionBuffer subdivisionPoints,
+                      double[] georeference, Source source) throws IOException {
+        if (georeference != null && georeference.length != GEOREFERENCE_LENGTH)
+            throw new IllegalArgumentException("Georeference must have " + GEOREFERENCE_LENGTH + " values");
+
+        Map<Node, Integer> nodeIndices = new IdentityHashMap<>(2 * nodes.length);
+        byte[][] names = new byte[nodes.length][];
+        long namesLength = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            nodeIndices.put(nodes[i], i);
+            names[i] = nodes[i].getName() == null ? new byte[0] : nodes[i].getName().getBytes(StandardCharsets.UTF_8);
+            namesLength += names[i].length;
+        }
+
+        final int pointsCount = subdivisionPoints == null ? 0 : subdivisionPoints.size();
+        long size = HEADER_SIZE + (georeference != null ? 8L * GEOREFERENCE_LENGTH : 0)
+                + 16L * nodes.length + 8L * edges.length;
+        if (pointsCount > 0)
+            size = ((size + 4L * (edges.length + 1) + 7) & ~7L) + 16L * pointsCount;
+        size += 4L * (nodes.length + 1) + namesLength;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Graph snapshot would be larger than 2 GB");
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes.length).putInt(edges.length).putInt(pointsCount)
+                    .putInt(subdivisionPoints == null ? 0 : subdivisionPoints.getSubdivisionPointsCount())
+                    .putInt((int) namesLength)
+                    .putInt((georeference != null ? GEOREFERENCE : 0) | (source != null ? SOURCE : 0))
+                    .putInt(source != null ? source.parserVersion : 0).putInt(0)
+                    .putLong(source != null ? source.size : 0).putLong(source != null ? source.lastModified : 0);
+
+            if (georeference != null) {
+                for (double value : georeference) {
+                    buffer.putDouble(value);
+                }
+            }
+
+            for (Node node : nodes) {
+                buffer.putDouble(node.getPosition().getX()).putDouble(node.getPosition().getY());
+            }
+
+            for (Edge edge : edges) {
+                Integer from = nodeIndices.get(edge.getFrom());
+                Integer to = nodeIndices.get(edge.getTo());
+                if (from == null || to == null)
+                    throw new IllegalArgumentException("Endpoint of edge is not among given nodes: " + edge);
+                buffer.putInt(from).putInt(to);
+            }
+
+            if (pointsCount > 0) {
+                for (int i = 0; i < edges.length; i++) {
+                    buffer.putInt(subdivisionPoints.getOffset(i));
+                }
+                buffer.putInt(pointsCount);
+                buffer.position(align(buffer.position()));
+
+                double[] x = subdivisionPoints.getX();
+                double[] y = subdivisionPoints.getY();
+                for (int i = 0; i < pointsCount; i++) {
+                    buffer.putDouble(x[i]).putDouble(y[i]);
+                }
+            }
+
+            int nameOffset = 0;
+            for (byte[] name : names) {
+                buffer.putInt(nameOffset);
+                nameOffset += name.length;
+            }
+            buffer.putInt(nameOffset);
+            for (byte[] name : names) {
+                buffer.put(name);
+            }
+
+            buffer.force();
+        }
+    }
+
+    public int getNodesCount() {
+        return nodesCount;
+    }
+
+    public int getEdgesCount() {
+        return edgesCount;
+    }
+
+    /**
+     * Returns true if the snapshot holds subdivision points of edges
+     * @return
+     */
+    public boolean hasSubdivisionPoints() {
+        return pointsCount > 0;
+    }
+
+    /**
+     * Returns total number of stored subdivision points, including endpoints of edges
+     * @return
+     */
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    /**
+     * Returns requested number of subdivision points per edge of stored points
+     * @return
+     */
+    public int getSubdivisionPointsCount() {
+        return subdivisionPointsCount;
+    }
+
+    /**
+     * Returns true if the snapshot holds reference of canvas coordinates to latitude and longitude
+     * @return
+     */
+    public boolean hasGeoreference() {
+        return (flags & GEOREFERENCE) != 0;
+    }
+
+    /**
+     * Returns reference of canvas coordinates to latitude and longitude, in order of
+     * {@link IOParser.LatLongConverter#getReference()}
+     *
+     * @return
+     * @throws IllegalStateException if the snapshot holds no georeference
+     */
+    double[] getGeoreference() {
+        if (!hasGeoreference())
+            throw new IllegalStateException("Graph snapshot holds no georeference");
+
+        double[] georeference = new double[GEOREFERENCE_LENGTH];
+        for (int i = 0; i < GEOREFERENCE_LENGTH; i++) {
+            georeference[i] = buffer.getDouble(HEADER_SIZE + 8 * i);
+        }
+        return georeference;
+    }
+
+    /**
+     * Returns file the graph was parsed from, or {@code null} if the snapshot was not written from a parsed file
+     *
+     * @return
+     */
+    Source getSource() {
+        if ((flags & SOURCE) == 0)
+            return null;
+        return new Source(buffer.getLong(40), buffer.getLong(48), buffer.getInt(32));
+    }
+
+    public double getNodeX(int nodeID) {
+        return buffer.getDouble(nodesPosition + 16 * nodeID);
+    }
+
+    public double getNodeY(int nodeID) {
+        return buffer.getDouble(nodesPosition + 16 * nodeID + 8);
+    }
+
+    public String getNodeName(int nodeID) {
+        int from = buffer.getInt(nameOffsetsPosition + 4 * nodeID);
+        int to = buffer.getInt(nameOffsetsPosition + 4 * (nodeID + 1));
+        byte[] name = new byte[to - from];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(namesPosition + from + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns index of from-node of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getEdgeFrom(int edgeID) {
+        return buffer.getInt(edgesPosition + 8 * edgeID);
+    }
+
+    /**
+     * Returns index of to-node of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getEdgeTo(int edgeID) {
+        return buffer.getInt(edgesPosition + 8 * edgeID + 4);
+    }
+
+    /**
+     * Returns index of first subdivision point (start-point) of given edge, the edge ends at
+     * {@code getPointsOffset(edgeID + 1) - 1}
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getPointsOffset(int edgeID) {
+        return buffer.getInt(pointOffsetsPosition + 4 * edgeID);
+    }
+
+    public double getPointX(int pointID) {
+        return buffer.getDouble(pointsPosition + 16 * pointID);
+    }
+
+    public double getPointY(int pointID) {
+        return buffer.getDouble(pointsPosition + 16 * pointID + 8);
+    }
+
+    /**
+     * Copies stored subdivision points into a new buffer
+     *
+     * @return
+     * @throws IllegalStateException if the snapshot holds no subdivision points
+     */
+    public SubdivisionBuffer toSubdivisionBuffer() {
+        if (!hasSubdivisionPoints())
+            throw new IllegalStateException("Graph snapshot holds no subdivision points");
+
+        double[] x = new double[pointsCount];
+        double[] y = new double[pointsCount];
+        for (int i = 0; i < pointsCount; i++) {
+            x[i] = getPointX(i);
+            y[i] = getPointY(i);
+        }
+        int[] offsets = new int[edgesCount + 1];
+        for (int i = 0; i <= edgesCount; i++) {
+            offsets[i] = getPointsOffset(i);
+        }
+        return new SubdivisionBuffer(x, y, offsets, subdivisionPointsCount);
+    }
+}
@@ -1,20 +1,28 @@
 package core;
 
-import com.tinkerpop.blueprints.Direction;
-import com.tinkerpop.blueprints.Graph;
-import com.tinkerpop.blueprints.Vertex;
-import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
-import com.tinkerpop.blueprints.util.io.graphml.GraphMLReader;
 import model.Edge;
 import model.Node;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class IOParser {
 
-    class LatLongConverter{
+    private static final Logger LOGGER = Logger.getLogger(IOParser.class.getName());
+
+    // version of parsing and projection of nodes by loadInputData, stored in snapshots of parsed files; increment it
+    // whenever nodes are parsed or projected differently, so that existing snapshots are not loaded anymore
+    static final int PARSER_VERSION = 1;
+
+    static class LatLongConverter{
         private double [] topLeft;
         private double [] bottomRight;
         private final double radius = 6.371;
@@ -71,40 +79,200 @@ public class IOParser {
             return new double[]{topLeft[0] + (bottomRight[0] - topLeft[0]) * percentX,
                                 topLeft[1] + (bottomRight[1] - topLeft[1]) * percentY};
         }
+
+        /**
+         * Inverse of {@link #convertLatLngToXY(double, double)}
+         *
+         * @param x
+         * @param y
+         * @return latitude and longitude
+         */
+        public double[] convertXYToLatLng(double x, double y){
+            double percentX = (x - topLeft[0]) / (bottomRight[0] - topLeft[0]);
+            double percentY = (y - topLeft[1]) / (bottomRight[1] - topLeft[1]);
+
+            double globalX = topLeftXY[0] + (bottomRightXY[0] - topLeftXY[0]) * percentX;
+            double globalY = topLeftXY[1] + (bottomRightXY[1] - topLeftXY[1]) * percentY;
+
+            return new double[]{globalY / radius,
+                                globalX / (radius * Math.cos((topLeft[2] + bottomRight[2]) / 2.0))};
+        }
+
+        /**
+         * Returns canvas x, y of top-left and bottom-right corner and their latitude, longitude
+         *
+         * @return
+         */
+        public double[] getReference(){
+            return new double[]{topLeft[0], topLeft[1], bottomRight[0], bottomRight[1],
+                                topLeft[2], topLeft[3], bottomRight[2], bottomRight[3]};
+        }
     }
 
     private static Edge[] edges;
     private static Node[] nodes;
 
+    // bundled subdivision points loaded from snapshot, null if there are none
+    private SubdivisionBuffer subdivisionPoints;
+    // converter of canvas coordinates of nodes, null if the graph was loaded from snapshot without georeference
+    private LatLongConverter converter;
+
     /**
      * Initializes IOParser with specified {@code path}.
-     * Loads data from file on specified path in expected GraphML format.
+     * Loads data from file on specified path in expected GraphML format, or from binary snapshot if the path
+     * ends with {@link GraphSnapshot#EXTENSION}.
      *
      * @param pathToFile
      * @throws IOException
      */
     public IOParser(String pathToFile) throws IOException {
+        if(pathToFile.endsWith(GraphSnapshot.EXTENSION))
+            loadSnapshot(Paths.get(pathToFile));
+        else
+            loadInputData(pathToFile);
+    }
+
+    /**
+     * Initializes IOParser with specified {@code path}, using binary snapshot of the file if {@code useSnapshot}
+     * is true. The snapshot is stored next to the file, with {@link GraphSnapshot#EXTENSION} appended to its name.
+     * It is loaded if it was written from a file of the same size and last modification time by the same
+     * {@link #PARSER_VERSION}, otherwise the file is parsed and the snapshot is written. Failure to write the snapshot
+     * is only logged.
+     *
+     * @param pathToFile
+     * @param useSnapshot
+     * @throws IOException
+     */
+    public IOParser(String pathToFile, boolean useSnapshot) throws IOException {
+        if(!useSnapshot) {
+            loadInputData(pathToFile);
+            return;
+        }
+
+        Path snapshot = Paths.get(pathToFile + GraphSnapshot.EXTENSION);
+        GraphSnapshot.Source source = GraphSnapshot.Source.of(Paths.get(pathToFile), PARSER_VERSION);
+        if(isSnapshotOf(snapshot, source)){
+            loadSnapshot(snapshot);
+            return;
+        }
+
         loadInputData(pathToFile);
+        writeSnapshot(snapshot, source);
+    }
+
+    /**
+     * Returns true if given snapshot exists and was written from given source. Unreadable snapshot, e.g. of an older
+     * version, is treated as outdated.
+     *
+     * @param snapshot
+     * @param source
+     * @return
+     */
+    private static boolean isSnapshotOf(Path snapshot, GraphSnapshot.Source source){
+        if(!Files.exists(snapshot))
+            return false;
+
+        try {
+            return source.equals(GraphSnapshot.map(snapshot).getSource());
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Parsing the file again, unable to read snapshot " + snapshot + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes snapshot of parsed graph. It is written into a temporary file first and then moved, so that an
+     * interrupted write never leaves a corrupted snapshot behind. Failure to write is only logged, e.g. when the
+     * directory is read-only.
+     *
+     * @param snapshot
+     * @param source
+     */
+    private void writeSnapshot(Path snapshot, GraphSnapshot.Source source){
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(snapshot.toAbsolutePath().getParent(),
+                    snapshot.getFileName().toString(), ".tmp");
+            GraphSnapshot.write(temporary, nodes, edges, null, converter.getReference(), source);
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write snapshot " + snapshot, e);
+        } finally {
+            if(temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to delete " + temporary, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads nodes and edges, and subdivision points if present, from binary snapshot.
+     *
+     * @param path
+     * @throws IOException
+     */
+    private void loadSnapshot(Path path) throws IOException {
+        final Object event = BundlingMonitoring.events().begin(BundlingEvents.Phase.PARSE);
+        final long start = BundlingMonitoring.metrics().phaseStarted(BundlingEvents.Phase.PARSE);
+        GraphSnapshot snapshot = GraphSnapshot.map(path);
+
+        nodes = new Node[snapshot.getNodesCount()];
+        edges = new Edge[snapshot.getEdgesCount()];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(snapshot.getNodeX(i), snapshot.getNodeY(i), i, snapshot.getNodeName(i));
+        }
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new Edge(nodes[snapshot.getEdgeFrom(i)], nodes[snapshot.getEdgeTo(i)], i);
+        }
+
+        subdivisionPoints = snapshot.hasSubdivisionPoints() ? snapshot.toSubdivisionBuffer() : null;
+
+        if(snapshot.hasGeoreference()){
+            double[] reference = snapshot.getGeoreference();
+            converter = new LatLongConverter()
+                    .setTopLeftCanvasXY(reference[0], reference[1])
+                    .setBottomRightCanvasXY(reference[2], reference[3])
+                    .setTopLeftLatLong(reference[4], reference[5])
+                    .setBottomRightLatLong(reference[6], reference[7])
+                    .init();
+        }
+        BundlingMonitoring.metrics().phaseFinished(BundlingEvents.Phase.PARSE, start);
+        BundlingMonitoring.events().endParse(event, path.toString(), nodes.length, edges.length);
+        BundlingMonitoring.metrics().idle();
     }
 
     /**
      * Defines nodes by their latitude/longitude coordinates rather by their x/y mappings.
      * This method should be called when running the airlines.graphml dataset.
+     * Tooltip has form NAME(lngx=LONGITUDE,laty=LATITUDE).
      *
      * @param ID
      * @param data
      * @return
+     * @throws IOException if tooltip does not have expected form
      */
-    private Node parseAirportData(final int ID, String data){
-        String[] splitted = data.split("\\(");
-        String name = splitted[0];
+    private Node parseAirportData(final int ID, String data) throws IOException {
+        final String LNGX = "lngx=";
+        final String LATY = "laty=";
 
-        String[] locSplit = splitted[1].split(",");
-        String lngxPart = locSplit[0];
-        String latyPart = locSplit[1].replace(")", "");
+        int bracket = data == null ? -1 : data.indexOf('(');
+        int lngxStart = bracket < 0 ? -1 : data.indexOf(LNGX, bracket);
+        int comma = lngxStart < 0 ? -1 : data.indexOf(',', lngxStart);
+        int latyStart = comma < 0 ? -1 : data.indexOf(LATY, comma);
+        if(latyStart < 0)
+            throw new IOException("Malformed airport data of node " + ID + ": " + data);
 
-        double laty = Double.valueOf(latyPart.split("laty=")[1]);
-        double lngx = Double.valueOf(lngxPart.split("lngx=")[1]);
+        int latyEnd = data.indexOf(')', latyStart);
+        if(latyEnd < 0)
+            latyEnd = data.length();
+
+        String name = data.substring(0, bracket);
+        double lngx = Double.parseDouble(data.substring(lngxStart + LNGX.length(), comma));
+        double laty = Double.parseDouble(data.substring(latyStart + LATY.length(), latyEnd));
 
         return new Node(laty, lngx, ID, name);
     }
@@ -112,14 +280,13 @@ public class IOParser {
     /**
      * Method used to parse migrations.xml dataset.
      *
-     * @param v
+     * @param nodeID
+     * @param name
+     * @param x
+     * @param y
      * @return
      */
-    private Node parseMigrationsData(Vertex v){
-        int nodeID = Integer.valueOf((String) v.getId());
-        String name = v.getProperty("tooltip").toString();
-        double x = Double.valueOf(v.getProperty("x").toString());
-        double y = Double.valueOf(v.getProperty("y").toString());
+    private Node parseMigrationsData(int nodeID, String name, double x, double y){
         x /= 10;
         y /= 10;
         return new Node(-y, x, nodeID, name);
@@ -128,35 +295,40 @@ public class IOParser {
 
     /**
      * Loads and parses input data. Stores data into {@code edges} and {@code nodes} arrays.
+     * Nodes and edges are indexed by their IDs, which have to be numbered from 0.
      *
      * @throws IOException
      */
     private void loadInputData(String pathToFile) throws IOException {
+        final Object event = BundlingMonitoring.events().begin(BundlingEvents.Phase.PARSE);
+        final long start = BundlingMonitoring.metrics().phaseStarted(BundlingEvents.Phase.PARSE);
 
-        Graph graph = new TinkerGraph();
-        GraphMLReader reader = new GraphMLReader(graph);
-
-        InputStream is = new BufferedInputStream(new FileInputStream(pathToFile));
-        reader.inputGraph(is);
+        GraphMLStreamReader reader = new GraphMLStreamReader();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(pathToFile))) {
+            reader.read(is);
+        }
 
-        final int numNodes = (int)graph.getVertices().spliterator().getExactSizeIfKnown();
-        final int numEdges = (int)graph.getEdges().spliterator().getExactSizeIfKnown();
+        final int numNodes = reader.getNodesCount();
+        final int numEdges = reader.getEdgesCount();
 
         edges = new Edge[numEdges];
         nodes = new Node[numNodes];
 
-        for(Vertex v : graph.getVertices()){
-            int nodeID = Integer.valueOf((String) v.getId());
+        final boolean migrations = pathToFile.contains("migrations");
 
-            if(pathToFile.contains("migrations")){
-                nodes[nodeID] = parseMigrationsData(v);
-            }else{
+        for (int k = 0; k < numNodes; k++) {
+            int nodeID = checkID(reader.getNodeIDs()[k], numNodes, "node");
+            String name = reader.getNodeTooltips()[k];
 
-                String name = v.getProperty("tooltip").toString();
+            if(migrations){
+                nodes[nodeID] = parseMigrationsData(nodeID, name, reader.getNodeX()[k], reader.getNodeY()[k]);
+            }else{
                 nodes[nodeID] = parseAirportData(nodeID, name);
             }
         }
 
+        final Object projectionEvent = BundlingMonitoring.events().begin(BundlingEvents.Phase.PROJECTION);
+        final long projectionStart = BundlingMonitoring.metrics().phaseStarted(BundlingEvents.Phase.PROJECTION);
 
         // need to compute minimal and maximal latitude and longitude
         double minLat = Arrays.stream(nodes).mapToDouble(e-> e.getPosition().getX()).min().orElse(0);
@@ -164,8 +336,8 @@ public class IOParser {
         double minLng = Arrays.stream(nodes).mapToDouble(e-> e.getPosition().getY()).min().orElse(0);
         double maxLng = Arrays.stream(nodes).mapToDouble(e-> e.getPosition().getY()).max().orElse(0);
 
-        // initialize latLong <-> canvasXY converter
-        LatLongConverter converter = new LatLongConverter()
+        // initialize latLong <-> canvasXY converter, changing the projection requires incrementing PARSER_VERSION
+        converter = new LatLongConverter()
                 .setTopLeftLatLong(maxLat, minLng)
                 .setBottomRightLatLong(minLat, maxLng)
                 .setTopLeftCanvasXY(100, 50)
@@ -178,15 +350,25 @@ public class IOParser {
             double[] xy = converter.convertLatLngToXY(airport.getPosition().getX(), airport.getPosition().getY());
             airport.setPosition(xy[0], xy[1]);
         }
+        BundlingMonitoring.metrics().phaseFinished(BundlingEvents.Phase.PROJECTION, projectionStart);
+        BundlingMonitoring.events().endProjection(projectionEvent, nodes.length);
 
-        for(com.tinkerpop.blueprints.Edge e : graph.getEdges()){
-            int nodeFromID = Integer.valueOf((String)e.getVertex(Direction.OUT).getId());
-            int nodeToID = Integer.valueOf((String)e.getVertex(Direction.IN).getId());
-            int flightID = Integer.valueOf((String) e.getId());
+        for (int k = 0; k < numEdges; k++) {
+            int nodeFromID = checkID(reader.getEdgeSources()[k], numNodes, "node");
+            int nodeToID = checkID(reader.getEdgeTargets()[k], numNodes, "node");
+            int flightID = checkID(reader.getEdgeIDs()[k], numEdges, "edge");
             Edge edge = new Edge(nodes[nodeFromID], nodes[nodeToID], flightID);
             edges[flightID] = edge;
         }
+        BundlingMonitoring.metrics().phaseFinished(BundlingEvents.Phase.PARSE, start);
+        BundlingMonitoring.events().endParse(event, pathToFile, numNodes, numEdges);
+        BundlingMonitoring.metrics().idle();
+    }
 
+    private static int checkID(int ID, int count, String element) throws IOException {
+        if(ID < 0 || ID >= count)
+            throw new IOException(String.format("ID of %s %d out of range [0, %d)", element, ID, count));
+        return ID;
     }
 
     @SuppressWarnings("unused")
@@ -210,27 +392,72 @@ public class IOParser {
     }
 
     @SuppressWarnings("unused")
-    public void printToJson(Edge[]edges) throws FileNotFoundException, UnsupportedEncodingException {
-        PrintWriter writer = new PrintWriter("src/main/resources/results.js", "UTF-8");
-        writer.println("var results = [");
+    public void printToJson(Edge[]edges) throws IOException {
+        int pointsCount = 0;
+        for (Edge edge : edges) {
+            pointsCount += edge.getSubdivisionPoints().size();
+        }
 
+        double[] x = new double[pointsCount];
+        double[] y = new double[pointsCount];
+        int[] offsets = new int[edges.length + 1];
+        int p = 0;
         for (int j = 0; j < edges.length; j++) {
-            writer.print("[");
-            int idx = 0;
+            offsets[j] = p;
             for(Node point : edges[j].getSubdivisionPoints()){
-                writer.print("{\"x\":" + point.getPosition().getX() + ", \"y\":" + point.getPosition().getY() + "}");
-                if(++idx < edges[j].getSubdivisionPoints().size()){
-                    writer.print(",");
-                }
-            }
-            writer.print("]");
-            if(j < edges.length -1){
-                writer.print(",");
+                x[p] = point.getPosition().getX();
+                y[p++] = point.getPosition().getY();
             }
         }
+        offsets[edges.length] = p;
 
-        writer.println("]");
-        writer.close();
+        try (OutputStream out = Files.newOutputStream(Paths.get("src/main/resources/results.js"))) {
+            out.write("var results = ".getBytes(StandardCharsets.UTF_8));
+            new ResultExporter(ResultExporter.Format.JSON)
+                    .export(out, edges, new SubdivisionBuffer(x, y, offsets, 0));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Creates exporter of bundled edges of the parsed graph into given format. GeoJSON exporter converts points
+     * back to latitude and longitude.
+     *
+     * @param format
+     * @return
+     * @throws IllegalStateException if GeoJSON is requested for graph loaded from snapshot without georeference
+     */
+    public ResultExporter createExporter(ResultExporter.Format format){
+        ResultExporter exporter = new ResultExporter(format);
+        if(format == ResultExporter.Format.GEOJSON){
+            if(converter == null)
+                throw new IllegalStateException("Graph was loaded from snapshot without georeference");
+            exporter.setConverter(converter);
+        }
+        return exporter;
+    }
+
+    /**
+     * Writes parsed nodes and edges together with given bundled subdivision points into binary snapshot,
+     * which can be loaded back by {@link #IOParser(String)}.
+     *
+     * @param path path of the snapshot, should end with {@link GraphSnapshot#EXTENSION}
+     * @param subdivisionPoints subdivision points of parsed edges or {@code null}
+     * @throws IOException
+     */
+    @SuppressWarnings("unused")
+    public void printToBinary(String path, SubdivisionBuffer subdivisionPoints) throws IOException {
+        GraphSnapshot.write(Paths.get(path), nodes, edges, subdivisionPoints,
+                converter == null ? null : converter.getReference());
+    }
+
+    /**
+     * Retrieve bundled subdivision points loaded from binary snapshot
+     *
+     * @return subdivision points or {@code null} if none were loaded
+     */
+    public SubdivisionBuffer getSubdivisionPoints(){
+        return subdivisionPoints;
     }
 
     /**
@@ -0,0 +1,154 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Array of ints and doubles stored in a temporary memory-mapped file, indexed by long.
+ *
+ * The file is mapped in chunks of 1 GiB, mapped when first accessed, so the array grows as far as the disk allows.
+ * The last chunk is mapped only as far as it is accessed, doubling its mapped size when it grows, so the file takes
+ * about as much disk space as the array holds.
+ * Its pages live in the page cache rather than in the heap: the operating system keeps only recently used pages
+ * resident and writes others back to the file under memory pressure. The file is deleted when the array is closed,
+ * until then other processes may map it too, see {@link #open(Path)}.
+ * Ints and doubles are addressed by their own indices, an array should hold only one of them.
+ * Reads and writes of different elements may run concurrently once all accessed chunks are mapped, see
+ * {@link #ensureCapacity(long)}.
+ */
+class MappedArray implements Closeable {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    // granularity of mapped size of the last chunk, a multiple of sizes of elements
+    private static final long MAPPING_ALIGNMENT = 1L << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    // whether the file was created by this array and is deleted by close()
+    private final boolean owner;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    /**
+     * Creates empty array in a new file in given directory
+     *
+     * @param directory
+     * @param suffix suffix of the file name, e.g. its content
+     * @throws IOException
+     */
+    MappedArray(Path directory, String suffix) throws IOException {
+        Files.createDirectories(directory);
+        this.file = Files.createTempFile(directory, "fdeb-", suffix);
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.owner = true;
+    }
+
+    private MappedArray(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        this.owner = false;
+    }
+
+    /**
+     * Opens array created by another instance, possibly in another process, until it is closed there. Changes are
+     * visible to all instances mapping the file. Closing the opened array does not delete the file.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    static MappedArray open(Path file) throws IOException {
+        return new MappedArray(file, FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Maps all chunks holding given number of bytes
+     *
+     * @param bytes
+     * @return
+     */
+    MappedArray ensureCapacity(long bytes) {
+        if (bytes > 0)
+            chunk(bytes - 1);
+        return this;
+    }
+
+    private MappedByteBuffer chunk(long position) {
+        final int index = (int) (position >>> CHUNK_SHIFT);
+        final int offset = (int) (position & CHUNK_MASK);
+        // mapped sizes are aligned to elements, so an element starting in a chunk ends in it too
+        if (index < chunks.length && chunks[index] != null && offset < chunks[index].capacity())
+            return chunks[index];
+
+        if (index >= chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(index + 1, 2 * chunks.length));
+        try {
+            for (int i = 0; i < index; i++) {
+                if (chunks[i] == null || chunks[i].capacity() < CHUNK_SIZE)
+                    chunks[i] = map(i, CHUNK_SIZE);
+            }
+
+            // map at least the part already in the file, e.g. written by the instance which created it
+            final long mappedSize = chunks[index] == null ? 0 : chunks[index].capacity();
+            final long size = Math.max(offset + 1L,
+                    Math.max(2 * mappedSize, channel.size() - ((long) index << CHUNK_SHIFT)));
+            chunks[index] = map(index, Math.min(CHUNK_SIZE, (size + MAPPING_ALIGNMENT - 1) & -MAPPING_ALIGNMENT));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map " + file, e);
+        }
+        return chunks[index];
+    }
+
+    private MappedByteBuffer map(int index, long size) throws IOException {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, (long) index << CHUNK_SHIFT, size);
+        chunk.order(ByteOrder.nativeOrder());
+        return chunk;
+    }
+
+    double getDouble(long index) {
+        final long position = index << 3;
+        return chunk(position).getDouble((int) (position & CHUNK_MASK));
+    }
+
+    void putDouble(long index, double value) {
+        final long position = index << 3;
+        chunk(position).putDouble((int) (position & CHUNK_MASK), value);
+    }
+
+    int getInt(long index) {
+        final long position = index << 2;
+        return chunk(position).getInt((int) (position & CHUNK_MASK));
+    }
+
+    void putInt(long index, int value) {
+        final long position = index << 2;
+        chunk(position).putInt((int) (position & CHUNK_MASK), value);
+    }
+
+    /**
+     * Closes the file and deletes it if it was created by this array, its disk space is released once chunks of all
+     * arrays mapping it are garbage collected
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        chunks = new MappedByteBuffer[0];
+        channel.close();
+        if (owner)
+            Files.deleteIfExists(file);
+    }
+}
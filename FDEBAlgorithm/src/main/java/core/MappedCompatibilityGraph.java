@@ -0,0 +1,121 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Compatible edges of all edges in compressed sparse row format, as in {@link CompatibilityGraph}, with neighbours
+ * stored in a memory-mapped file. Only offsets of edges are held in the heap; scores are not stored.
+ */
+class MappedCompatibilityGraph implements Closeable {
+
+    private final long[] offsets;
+    private final MappedArray neighbours;
+
+    private MappedCompatibilityGraph(long[] offsets, MappedArray neighbours) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * Scores pairs of edges found by {@link EdgeMidpointIndex}, or all pairs if the threshold lets every pair be
+     * compatible, as {@link ForceDirectedEdgeBundling} does. Compatible pairs are first appended to a temporary
+     * mapped file and then sorted into rows by counting, so neighbours of each edge end up in ascending order.
+     *
+     * @param geometry geometry of all edges
+     * @param threshold
+     * @param directory directory of the files
+     * @param cancellation called periodically, throws {@link CancellationException} to stop scoring
+     * @return
+     * @throws IOException
+     */
+    static MappedCompatibilityGraph score(EdgeGeometry geometry, double threshold, Path directory,
+                                          Runnable cancellation) throws IOException {
+        final int edgesCount = geometry.getEdgesCount();
+        CompatibilityScorer scorer = new CompatibilityScorer(geometry);
+        EdgeMidpointIndex index = threshold <= 0 || threshold > 1 ? null : new EdgeMidpointIndex(geometry, threshold);
+
+        long[] offsets = new long[edgesCount + 1];
+        long pairsCount = 0;
+        try (MappedArray pairs = new MappedArray(directory, ".pairs")) {
+            for (int i = 0; i < edgesCount - 1; i++) {
+                if (i % 64 == 0)
+                    cancellation.run();
+
+                final int candidatesCount = index == null ? edgesCount - i - 1 : index.findCandidates(i);
+                final int[] candidates = index == null ? null : index.getCandidates();
+                for (int k = 0; k < candidatesCount; k++) {
+                    final int j = index == null ? i + 1 + k : candidates[k];
+                    if (scorer.score(i, j) >= threshold) {
+                        pairs.putInt(2 * pairsCount, i);
+                        pairs.putInt(2 * pairsCount + 1, j);
+                        pairsCount++;
+                        offsets[i + 1]++;
+                        offsets[j + 1]++;
+                    }
+                }
+            }
+            for (int e = 0; e < edgesCount; e++) {
+                offsets[e + 1] += offsets[e];
+            }
+
+            MappedArray neighbours = new MappedArray(directory, ".neighbours").ensureCapacity(8 * pairsCount);
+            long[] positions = offsets.clone();
+            for (long k = 0; k < pairsCount; k++) {
+                final int i = pairs.getInt(2 * k);
+                final int j = pairs.getInt(2 * k + 1);
+                neighbours.putInt(positions[i]++, j);
+                neighbours.putInt(positions[j]++, i);
+            }
+            return new MappedCompatibilityGraph(offsets, neighbours);
+        }
+    }
+
+    /**
+     * Opens graph whose neighbours were stored by another graph, see {@link MappedArray#open(Path)}
+     *
+     * @param offsets offsets of edges
+     * @param neighboursFile
+     * @return
+     * @throws IOException
+     */
+    static MappedCompatibilityGraph open(long[] offsets, Path neighboursFile) throws IOException {
+        MappedArray neighbours = MappedArray.open(neighboursFile);
+        neighbours.ensureCapacity(4 * offsets[offsets.length - 1]);
+        return new MappedCompatibilityGraph(offsets, neighbours);
+    }
+
+    Path getNeighboursFile() {
+        return neighbours.getFile();
+    }
+
+    /**
+     * Returns index of the first compatible edge of given edge in {@link #getNeighbour(long)}, compatible edges of
+     * the last edge end at {@code getOffset(edgesCount)}
+     *
+     * @param edgeID
+     * @return
+     */
+    long getOffset(int edgeID) {
+        return offsets[edgeID];
+    }
+
+    int getNeighbour(long k) {
+        return neighbours.getInt(k);
+    }
+
+    /**
+     * Returns number of compatible pairs, each counted once
+     * @return
+     */
+    long getPairsCount() {
+        return offsets[offsets.length - 1] / 2;
+    }
+
+    @Override
+    public void close() throws IOException {
+        neighbours.close();
+    }
+}
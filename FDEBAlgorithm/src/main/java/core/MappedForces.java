@@ -0,0 +1,128 @@
+package core;
+
+/**
+ * Moves subdivision points stored in a {@link MappedSubdivisionBuffer} by forces of {@link ForceDirectedEdgeBundling}
+ * with the scalar kernel, so that results are the same as those of the flat algorithm.
+ *
+ * Only current positions are read and only new positions of the given edges are written, so disjoint ranges of edges
+ * may be processed concurrently, by threads of {@link OutOfCoreEdgeBundling} or by processes of
+ * {@link ShardedEdgeBundling} sharing the mapped files.
+ */
+class MappedForces {
+
+    private final double[] lengths;
+    private final double K;
+    private final MappedCompatibilityGraph compatibilityGraph;
+    private MappedSubdivisionBuffer subdivisionPoints;
+
+    // maximal and summed displacement of subdivision points of each edge in the last iteration
+    private final double[] maxDisplacements;
+    private final double[] displacementSums;
+
+    /**
+     * @param lengths lengths of all edges
+     * @param K flexibility of edges
+     * @param compatibilityGraph compatible edges of all edges
+     */
+    MappedForces(double[] lengths, double K, MappedCompatibilityGraph compatibilityGraph) {
+        this.lengths = lengths;
+        this.K = K;
+        this.compatibilityGraph = compatibilityGraph;
+        this.maxDisplacements = new double[lengths.length];
+        this.displacementSums = new double[lengths.length];
+    }
+
+    MappedForces setSubdivisionPoints(MappedSubdivisionBuffer subdivisionPoints) {
+        this.subdivisionPoints = subdivisionPoints;
+        return this;
+    }
+
+    /**
+     * Calculates new positions of subdivision points of given range of edges:
+     * F = stepSize * (k_p * (p_(j-1) + p_(j+1) - 2 * p_j) + sum over compatible edges (q_j - p_j) / ||q_j - p_j||)
+     *
+     * @param fromEdgeID
+     * @param toEdgeID
+     * @param subdivisionPointsCount
+     * @param stepSize
+     */
+    void calculateNewPositions(int fromEdgeID, int toEdgeID, int subdivisionPointsCount, double stepSize) {
+        final MappedSubdivisionBuffer points = subdivisionPoints;
+
+        for (int i = fromEdgeID; i < toEdgeID; i++) {
+            final long offset = points.getOffset(i);
+            final long fromNeighbour = compatibilityGraph.getOffset(i);
+            final long toNeighbour = compatibilityGraph.getOffset(i + 1);
+            final double kP = K / (lengths[i] * (subdivisionPointsCount + 1));
+            double max = 0;
+            double sum = 0;
+
+            for (int j = 1; j < subdivisionPointsCount + 1; j++) {
+                final long p = offset + j;
+                final double x = points.getX(p);
+                final double y = points.getY(p);
+                double forceX = (points.getX(p - 1) + points.getX(p + 1) - 2 * x) * kP;
+                double forceY = (points.getY(p - 1) + points.getY(p + 1) - 2 * y) * kP;
+
+                double electrostaticX = 0;
+                double electrostaticY = 0;
+                for (long k = fromNeighbour; k < toNeighbour; k++) {
+                    // corresponding subdivision point of compatible edge
+                    final long q = points.getOffset(compatibilityGraph.getNeighbour(k)) + j;
+
+                    double dx = points.getX(q) - x;
+                    double dy = points.getY(q) - y;
+                    if (Math.abs(dx) < ElectrostaticKernel.EPS || Math.abs(dy) < ElectrostaticKernel.EPS)
+                        continue;
+
+                    double divisor = Math.sqrt(dx * dx + dy * dy);
+                    electrostaticX += dx / divisor;
+                    electrostaticY += dy / divisor;
+                }
+                forceX += electrostaticX;
+                forceY += electrostaticY;
+                forceX *= stepSize;
+                forceY *= stepSize;
+
+                points.setNext(p, x + forceX, y + forceY);
+
+                final double displacement = Math.sqrt(forceX * forceX + forceY * forceY);
+                sum += displacement;
+                if (displacement > max)
+                    max = displacement;
+            }
+            maxDisplacements[i] = max;
+            displacementSums[i] = sum;
+        }
+    }
+
+    /**
+     * Returns maximal distance a subdivision point of given range of edges moved in the last iteration
+     *
+     * @param fromEdgeID
+     * @param toEdgeID
+     * @return
+     */
+    double getMaxDisplacement(int fromEdgeID, int toEdgeID) {
+        double max = 0;
+        for (int i = fromEdgeID; i < toEdgeID; i++) {
+            max = Math.max(max, maxDisplacements[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns sum of distances subdivision points of given range of edges moved in the last iteration
+     *
+     * @param fromEdgeID
+     * @param toEdgeID
+     * @return
+     */
+    double getDisplacementSum(int fromEdgeID, int toEdgeID) {
+        double sum = 0;
+        for (int i = fromEdgeID; i < toEdgeID; i++) {
+            sum += displacementSums[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,272 @@
+package core;
+
+import model.Edge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Subdivision points of all edges stored in memory-mapped files, laid out as in {@link SubdivisionBuffer}.
+ *
+ * Coordinates of point {@code p} are stored as doubles {@code 2p} (x) and {@code 2p + 1} (y) of a
+ * {@link MappedArray}, only offsets of edges are held in the heap. Buffers are used by {@link OutOfCoreEdgeBundling}
+ * for numbers of subdivision points which would not fit into the heap and shared by processes of
+ * {@link ShardedEdgeBundling}. Files are deleted by {@link #close()} of the buffer which created them.
+ */
+public class MappedSubdivisionBuffer implements Closeable {
+
+    private MappedArray points;
+    private MappedArray nextPoints;
+    private final long[] offsets;
+    private final int subdivisionPointsCount;
+
+    private MappedSubdivisionBuffer(MappedArray points, MappedArray nextPoints, long[] offsets,
+                                    int subdivisionPointsCount) {
+        this.points = points;
+        this.nextPoints = nextPoints;
+        this.offsets = offsets;
+        this.subdivisionPointsCount = subdivisionPointsCount;
+    }
+
+    /**
+     * Creates buffer in which each edge is divided only by its midpoint.
+     *
+     * @param edges edges of the graph
+     * @param directory directory of the files
+     * @return
+     * @throws IOException
+     */
+    static MappedSubdivisionBuffer create(Edge[] edges, Path directory) throws IOException {
+        SubdivisionBuffer buffer = new SubdivisionBuffer(edges);
+        long[] offsets = new long[edges.length + 1];
+        for (int i = 0; i <= edges.length; i++) {
+            offsets[i] = buffer.getOffset(i);
+        }
+
+        MappedSubdivisionBuffer mapped = new MappedSubdivisionBuffer(new MappedArray(directory, ".points"),
+                new MappedArray(directory, ".points"), offsets, 1);
+        mapped.ensureCapacity();
+        for (int p = 0; p < buffer.size(); p++) {
+            mapped.put(p, buffer.getX()[p], buffer.getY()[p]);
+        }
+        return mapped;
+    }
+
+    /**
+     * Opens buffer whose files were created by another buffer, see {@link MappedArray#open(Path)}
+     *
+     * @param pointsFile file of current positions
+     * @param nextPointsFile file of next positions
+     * @param offsets offsets of edges
+     * @param subdivisionPointsCount
+     * @return
+     * @throws IOException
+     */
+    static MappedSubdivisionBuffer open(Path pointsFile, Path nextPointsFile, long[] offsets,
+                                        int subdivisionPointsCount) throws IOException {
+        MappedArray points = MappedArray.open(pointsFile);
+        try {
+            MappedSubdivisionBuffer opened = new MappedSubdivisionBuffer(points, MappedArray.open(nextPointsFile),
+                    offsets, subdivisionPointsCount);
+            opened.ensureCapacity();
+            return opened;
+        } catch (IOException e) {
+            points.close();
+            throw e;
+        }
+    }
+
+    private void ensureCapacity() {
+        points.ensureCapacity(16 * size());
+        nextPoints.ensureCapacity(16 * size());
+    }
+
+    /**
+     * Stores given position into both current and next positions
+     */
+    private void put(long p, double x, double y) {
+        points.putDouble(2 * p, x);
+        points.putDouble(2 * p + 1, y);
+        nextPoints.putDouble(2 * p, x);
+        nextPoints.putDouble(2 * p + 1, y);
+    }
+
+    public double getX(long p) {
+        return points.getDouble(2 * p);
+    }
+
+    public double getY(long p) {
+        return points.getDouble(2 * p + 1);
+    }
+
+    /**
+     * Stores new position of given point, which becomes current after {@link #swap()}
+     *
+     * @param p
+     * @param x
+     * @param y
+     */
+    void setNext(long p, double x, double y) {
+        nextPoints.putDouble(2 * p, x);
+        nextPoints.putDouble(2 * p + 1, y);
+    }
+
+    /**
+     * Makes positions written by {@link #setNext(long, double, double)} current.
+     */
+    void swap() {
+        MappedArray tmp = points;
+        points = nextPoints;
+        nextPoints = tmp;
+    }
+
+    Path getPointsFile() {
+        return points.getFile();
+    }
+
+    Path getNextPointsFile() {
+        return nextPoints.getFile();
+    }
+
+    public int getEdgesCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns requested number of subdivision points per edge, i.e. number of points moved by forces
+     * @return
+     */
+    public int getSubdivisionPointsCount() {
+        return subdivisionPointsCount;
+    }
+
+    /**
+     * Returns index of start-point of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    public long getOffset(int edgeID) {
+        return offsets[edgeID];
+    }
+
+    /**
+     * Returns number of stored points of given edge, including both of its endpoints
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getPointsCount(int edgeID) {
+        return (int) (offsets[edgeID + 1] - offsets[edgeID]);
+    }
+
+    /**
+     * Returns total number of stored points
+     * @return
+     */
+    public long size() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Calculates new buffer with {@code newSubdivisionPointsCount} subdivision points for each edge, exactly as
+     * {@link SubdivisionBuffer#resample(int)} does. Edges are resampled one by one, so the heap holds points of a
+     * single edge only.
+     *
+     * @param newSubdivisionPointsCount
+     * @param directory directory of files of the new buffer
+     * @return
+     * @throws IOException
+     */
+    MappedSubdivisionBuffer resample(int newSubdivisionPointsCount, Path directory) throws IOException {
+        MappedSubdivisionBuffer resampled = new MappedSubdivisionBuffer(new MappedArray(directory, ".points"),
+                new MappedArray(directory, ".points"), new long[getEdgesCount() + 1], newSubdivisionPointsCount);
+
+        SubdivisionBuffer.Resampler resampler = new SubdivisionBuffer.Resampler(newSubdivisionPointsCount + 3);
+        resample(resampler, newSubdivisionPointsCount, edgeID -> {
+            final long offset = resampled.offsets[edgeID];
+            for (int j = 0; j < resampler.size; j++) {
+                resampled.put(offset + j, resampler.x[j], resampler.y[j]);
+            }
+            resampled.offsets[edgeID + 1] = offset + resampler.size;
+            resampler.size = 0;
+        });
+        resampled.ensureCapacity();
+        return resampled;
+    }
+
+    /**
+     * Resamples current positions into the heap, see {@link SubdivisionBuffer#resample(int)}
+     *
+     * @param newSubdivisionPointsCount
+     * @return
+     */
+    public SubdivisionBuffer toBuffer(int newSubdivisionPointsCount) {
+        SubdivisionBuffer.Resampler resampler = new SubdivisionBuffer.Resampler(
+                getEdgesCount() * (newSubdivisionPointsCount + 3));
+        int[] newOffsets = new int[getEdgesCount() + 1];
+        resample(resampler, newSubdivisionPointsCount, edgeID -> newOffsets[edgeID + 1] = resampler.size);
+
+        return new SubdivisionBuffer(Arrays.copyOf(resampler.x, resampler.size),
+                Arrays.copyOf(resampler.y, resampler.size), newOffsets, newSubdivisionPointsCount);
+    }
+
+    /**
+     * Appends resampled points of edges to given resampler one by one, calling {@code edgeResampled} after each edge
+     */
+    private void resample(SubdivisionBuffer.Resampler resampler, int newSubdivisionPointsCount,
+                          IntConsumer edgeResampled) {
+        double[] x = new double[0];
+        double[] y = new double[0];
+        for (int edgeID = 0; edgeID < getEdgesCount(); edgeID++) {
+            final int pointsCount = getPointsCount(edgeID);
+            if (x.length < pointsCount) {
+                x = new double[pointsCount];
+                y = new double[pointsCount];
+            }
+            for (int j = 0; j < pointsCount; j++) {
+                x[j] = getX(offsets[edgeID] + j);
+                y[j] = getY(offsets[edgeID] + j);
+            }
+            resampler.add(x, y, 0, pointsCount, newSubdivisionPointsCount);
+            edgeResampled.accept(edgeID);
+        }
+    }
+
+    /**
+     * Copies current positions into the heap
+     *
+     * @return
+     * @throws IllegalStateException if there are more than {@link Integer#MAX_VALUE} points
+     */
+    public SubdivisionBuffer toBuffer() {
+        if (size() > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many points to copy into the heap: " + size());
+
+        double[] x = new double[(int) size()];
+        double[] y = new double[(int) size()];
+        int[] intOffsets = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            intOffsets[i] = (int) offsets[i];
+        }
+        for (int p = 0; p < x.length; p++) {
+            x[p] = getX(p);
+            y[p] = getY(p);
+        }
+        return new SubdivisionBuffer(x, y, intOffsets, subdivisionPointsCount);
+    }
+
+    /**
+     * Deletes files of the buffer
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        points.close();
+        nextPoints.close();
+    }
+}
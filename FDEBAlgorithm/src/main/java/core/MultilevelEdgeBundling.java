@@ -0,0 +1,346 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Multilevel variant of {@link ForceDirectedEdgeBundling} for graphs with 100k and more edges.
+ *
+ * Edges are coarsened level by level by {@link EdgeCoarsening}, merging edges with endpoints in the same cells of a
+ * grid whose cells grow twice with each attempt, until at most {@link #setCoarsestEdgesCount(int)} edges remain or
+ * cells would get longer than a quarter of mean edge length. Only the coarsest graph is bundled by all cycles of the
+ * flat algorithm. Each finer level starts from bundled polylines of representatives of its edges, shifted to end at
+ * endpoints of the edges, and performs only the last {@link #setRefinementCycles(int)} cycles, which separate edges
+ * merged by coarsening and pull in edges of neighbouring bundles. At finer levels each edge interacts only with its
+ * most compatible edges, see {@link #setRefinementMaxDegree(int)}, so that refinement does not slow down
+ * quadratically as the graph gets denser.
+ *
+ * Observers are notified of iterations of all levels, cycles being numbered within each level, and once finished of
+ * the original nodes and edges. Results are not cached.
+ */
+public class MultilevelEdgeBundling implements Observable {
+
+    private static final Logger LOGGER = Logger.getLogger(MultilevelEdgeBundling.class.getName());
+
+    // cells of the first coarsening relative to mean edge length
+    private static final double INITIAL_CELL_SIZE = 1.0 / 32;
+    // coarsening stops before cells get larger than this relative to mean edge length
+    private static final double MAX_CELL_SIZE = 1.0 / 4;
+    // coarser level is kept only if it has at most this fraction of edges of the finer one
+    private static final double MIN_REDUCTION = 0.75;
+
+    private final double STEP_SIZE;
+    private final double COMPATIBILITY;
+    private final double K;
+    private final int CYCLES_COUNT;
+    private final int ITERATIONS_COUNT;
+
+    private final Node[] nodes;
+    private final Edge[] edges;
+
+    private SubdivisionBuffer subdivisionPoints;
+    private int coarsestEdgesCount = Configuration.DEFAULT_COARSEST_EDGES_COUNT;
+    private int refinementCycles = Configuration.DEFAULT_REFINEMENT_CYCLES;
+    private int refinementMaxDegree = Configuration.DEFAULT_REFINEMENT_MAX_DEGREE;
+    private int parallelism = 1;
+    private boolean singlePrecision;
+    // maximal duration of a run in nanoseconds, 0 for no limit
+    private long timeout;
+    // System.nanoTime() at which the current run times out
+    private long deadline;
+
+    private final List<Observer> observers = new ArrayList<>();
+    // level being bundled, cancel() is passed to it
+    private volatile ForceDirectedEdgeBundling current;
+    private volatile boolean cancelled;
+
+    /**
+     * @param nodes array of nodes representing nodes of graph indexed by its ID
+     * @param edges array of edges representing edges of graph indexed by its ID
+     * @param STEP_SIZE see {@link ForceDirectedEdgeBundling}
+     * @param COMPATIBILITY see {@link ForceDirectedEdgeBundling}
+     * @param K see {@link ForceDirectedEdgeBundling}
+     * @param ITERATIONS_COUNT see {@link ForceDirectedEdgeBundling}
+     * @param CYCLES_COUNT see {@link ForceDirectedEdgeBundling}
+     */
+    public MultilevelEdgeBundling(Node[] nodes, Edge[] edges, double STEP_SIZE, double COMPATIBILITY, double K,
+                                  int ITERATIONS_COUNT, int CYCLES_COUNT) {
+        this.STEP_SIZE = STEP_SIZE;
+        this.COMPATIBILITY = COMPATIBILITY;
+        this.K = K;
+        this.ITERATIONS_COUNT = ITERATIONS_COUNT;
+        this.CYCLES_COUNT = CYCLES_COUNT;
+        this.nodes = nodes;
+        this.edges = edges;
+    }
+
+    /**
+     * Uses default values for algorithm.
+     *
+     * @param nodes array of nodes representing nodes of graph indexed by its ID
+     * @param edges array of edges representing edges of graph indexed by its ID
+     */
+    public MultilevelEdgeBundling(Node[] nodes, Edge[] edges) {
+        this(nodes, edges,
+                Configuration.DEFAULT_STEP_SIZE,
+                Configuration.DEFAULT_COMPATIBILITY_THRESHOLD,
+                Configuration.DEFAULT_EDGE_STIFFNESS,
+                Configuration.DEFAULT_ITERATIONS_COUNT,
+                Configuration.DEFAULT_CYCLES_COUNT);
+    }
+
+    /**
+     * Sets number of edges at which coarsening stops, graphs with at most this many edges are bundled by the flat
+     * algorithm
+     *
+     * @param coarsestEdgesCount
+     * @return
+     */
+    public MultilevelEdgeBundling setCoarsestEdgesCount(int coarsestEdgesCount) {
+        if (coarsestEdgesCount < 1)
+            throw new IllegalArgumentException("Coarsest edges count must be positive: " + coarsestEdgesCount);
+        this.coarsestEdgesCount = coarsestEdgesCount;
+        return this;
+    }
+
+    /**
+     * Sets number of last cycles performed at each finer level
+     *
+     * @param refinementCycles value in [0, CYCLES_COUNT]
+     * @return
+     */
+    public MultilevelEdgeBundling setRefinementCycles(int refinementCycles) {
+        if (refinementCycles < 0 || refinementCycles > CYCLES_COUNT)
+            throw new IllegalArgumentException("Refinement cycles must be in [0, " + CYCLES_COUNT + "]: "
+                    + refinementCycles);
+        this.refinementCycles = refinementCycles;
+        return this;
+    }
+
+    /**
+     * Sets maximal number of compatible edges of an edge at finer levels, see
+     * {@link CompatibilityGraph#limitDegree(int)}, 0 for no limit. Edges start already bundled there, so the most
+     * compatible edges are enough to refine them, and the limit keeps refinement linear in the number of edges.
+     *
+     * @param refinementMaxDegree
+     * @return
+     */
+    public MultilevelEdgeBundling setRefinementMaxDegree(int refinementMaxDegree) {
+        if (refinementMaxDegree < 0)
+            throw new IllegalArgumentException("Refinement maximal degree must not be negative: "
+                    + refinementMaxDegree);
+        this.refinementMaxDegree = refinementMaxDegree;
+        return this;
+    }
+
+    /**
+     * Sets number of threads used to calculate forces, see {@link ForceDirectedEdgeBundling#setParallelism(int)}
+     *
+     * @param parallelism
+     * @return
+     */
+    public MultilevelEdgeBundling setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets whether subdivision points of all levels are moved in single precision, see
+     * {@link ForceDirectedEdgeBundling#setSinglePrecision(boolean)}
+     *
+     * @param singlePrecision
+     * @return
+     */
+    public MultilevelEdgeBundling setSinglePrecision(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision;
+        return this;
+    }
+
+    /**
+     * Sets maximal duration of the whole run over all levels, 0 (default) for no limit
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public MultilevelEdgeBundling setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Requests the run to stop, see {@link ForceDirectedEdgeBundling#cancel()}. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        ForceDirectedEdgeBundling level = current;
+        if (level != null)
+            level.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs coarsening, bundling of the coarsest level and refinement of finer levels.
+     *
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    public void run() {
+        deadline = System.nanoTime() + timeout;
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            runLevels(pool);
+        } catch (CancellationException e) {
+            // levels time out after the time remaining of the whole run
+            final CancellationException reported = cancelled ? e : new CancellationException(String.format(
+                    "Bundling timed out after %d ms", TimeUnit.NANOSECONDS.toMillis(timeout)));
+            LOGGER.log(Level.INFO, reported.getMessage());
+            for (Observer observer : observers) {
+                observer.cancelled(reported.getMessage());
+            }
+            throw reported;
+        } finally {
+            current = null;
+            if (pool != null)
+                pool.shutdown();
+        }
+
+        notifyObservers(0, 0, true);
+    }
+
+    private void runLevels(ForkJoinPool pool) {
+        final List<EdgeCoarsening> levels = coarsen();
+        LOGGER.log(Level.INFO, String.format("Bundling %d edges in %d levels, coarsest with %d edges",
+                edges.length, levels.size() + 1,
+                levels.isEmpty() ? edges.length : levels.get(levels.size() - 1).getCoarseEdges().length));
+
+        SubdivisionBuffer points = null;
+        CompatibilityGraph compatibilityGraph = null;
+        for (int level = levels.size(); level >= 0; level--) {
+            final long start = System.nanoTime();
+            final Node[] levelNodes = level == 0 ? nodes : levels.get(level - 1).getCoarseNodes();
+            final Edge[] levelEdges = level == 0 ? edges : levels.get(level - 1).getCoarseEdges();
+
+            ForceDirectedEdgeBundling fdeb = new ForceDirectedEdgeBundling(levelNodes, levelEdges,
+                    STEP_SIZE, COMPATIBILITY, K, ITERATIONS_COUNT, CYCLES_COUNT)
+                    .setPool(pool)
+                    .setSinglePrecision(singlePrecision);
+            if (points != null) {
+                checkCancelled();
+                final EdgeCoarsening coarsening = levels.get(level);
+                fdeb.setWarmStart(coarsening.prolong(levelEdges, points), CYCLES_COUNT - refinementCycles)
+                        .setCompatibilityGraph(limitDegree(coarsening.scoreCompatibilities(levelEdges,
+                                limitDegree(compatibilityGraph), COMPATIBILITY)));
+            }
+            if (timeout > 0)
+                fdeb.setTimeout(Math.max(deadline - System.nanoTime(), 1), TimeUnit.NANOSECONDS);
+            fdeb.registerObserver(forwarder);
+
+            current = fdeb;
+            if (cancelled)
+                fdeb.cancel();
+            fdeb.run();
+            points = fdeb.getSubdivisionPoints();
+            compatibilityGraph = fdeb.getCompatibilityGraph();
+            LOGGER.log(Level.INFO, String.format("Level %d with %d edges bundled in %d ms",
+                    level, levelEdges.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        subdivisionPoints = points;
+    }
+
+    private CompatibilityGraph limitDegree(CompatibilityGraph compatibilityGraph) {
+        return refinementMaxDegree > 0 ? compatibilityGraph.limitDegree(refinementMaxDegree) : compatibilityGraph;
+    }
+
+    /**
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    private void checkCancelled() {
+        if (cancelled)
+            throw new CancellationException("Bundling cancelled");
+        if (timeout > 0 && System.nanoTime() - deadline > 0)
+            throw new CancellationException(String.format("Bundling timed out after %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeout)));
+    }
+
+    /**
+     * @return coarser levels of edges, the finest first
+     */
+    private List<EdgeCoarsening> coarsen() {
+        double meanLength = 0;
+        for (Edge edge : edges) {
+            meanLength += edge.getLength() / edges.length;
+        }
+
+        List<EdgeCoarsening> levels = new ArrayList<>();
+        Edge[] levelEdges = edges;
+        for (double cellSize = meanLength * INITIAL_CELL_SIZE; levelEdges.length > coarsestEdgesCount
+                && cellSize <= meanLength * MAX_CELL_SIZE; cellSize *= 2) {
+            EdgeCoarsening level = EdgeCoarsening.coarsen(levelEdges, cellSize);
+            if (level.getCoarseEdges().length <= levelEdges.length * MIN_REDUCTION) {
+                levels.add(level);
+                levelEdges = level.getCoarseEdges();
+            }
+        }
+        return levels;
+    }
+
+    public SubdivisionBuffer getSubdivisionPoints() {
+        return subdivisionPoints;
+    }
+
+    // passes progress of single levels to observers of this instance
+    private final Observer forwarder = new Observer() {
+        @Override
+        public void updateProcessInfo(int iteration, int cycle) {
+            notifyObservers(iteration, cycle, false);
+        }
+
+        @Override
+        public void finished(Node[] nodes, Edge[] edges) {
+        }
+
+        @Override
+        public void updateDisplacement(int iteration, int cycle, double maxDisplacement, double meanDisplacement) {
+            for (Observer observer : observers) {
+                observer.updateDisplacement(iteration, cycle, maxDisplacement, meanDisplacement);
+            }
+        }
+
+        @Override
+        public void cycleFinished(int cycle, int iterationsCount, int savedIterationsCount) {
+            for (Observer observer : observers) {
+                observer.cycleFinished(cycle, iterationsCount, savedIterationsCount);
+            }
+        }
+    };
+
+    @Override
+    public void registerObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void notifyObservers(int iteration, int cycle, boolean finished) {
+        for (Observer observer : observers) {
+            if (finished)
+                observer.finished(nodes, edges);
+            else
+                observer.updateProcessInfo(iteration, cycle);
+        }
+    }
+}
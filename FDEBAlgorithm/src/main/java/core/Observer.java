@@ -8,4 +8,33 @@ public interface Observer {
     void updateProcessInfo(int iteration, int cycle);
     void finished(Node[]nodes, Edge[]edges);
 
+    /**
+     * Called after each iteration with displacement of subdivision points moved by the iteration
+     *
+     * @param iteration
+     * @param cycle
+     * @param maxDisplacement maximal distance a subdivision point moved
+     * @param meanDisplacement mean distance subdivision points moved
+     */
+    default void updateDisplacement(int iteration, int cycle, double maxDisplacement, double meanDisplacement) {
+    }
+
+    /**
+     * Called after each cycle
+     *
+     * @param cycle
+     * @param iterationsCount number of performed iterations
+     * @param savedIterationsCount number of iterations skipped because the cycle converged
+     */
+    default void cycleFinished(int cycle, int iterationsCount, int savedIterationsCount) {
+    }
+
+    /**
+     * Called instead of {@link #finished(Node[], Edge[])} when the run is cancelled or times out
+     *
+     * @param reason
+     */
+    default void cancelled(String reason) {
+    }
+
 }
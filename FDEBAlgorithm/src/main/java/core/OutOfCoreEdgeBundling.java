@@ -0,0 +1,370 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Variant of {@link ForceDirectedEdgeBundling} keeping subdivision points and compatible edges in memory-mapped files,
+ * for runs with many cycles whose subdivision points would not fit into the heap.
+ *
+ * Subdivision points are stored in {@link MappedSubdivisionBuffer}, compatible edges in
+ * {@link MappedCompatibilityGraph}. The heap holds only a few values per edge, however many subdivision points and
+ * compatible pairs there are; pages of the files are kept resident by the operating system as long as memory allows
+ * and written back to the files otherwise, so a large run slows down instead of running out of memory. Forces are
+ * calculated in blocks of edges, see {@link #setBlockSize(int)}, each block being a task of the pool if there is one.
+ *
+ * Forces and the schedule of cycles are those of the flat algorithm with the scalar kernel, so results are the same.
+ * Convergence and freezing tolerances, symmetric forces and the result cache are not supported.
+ * When finished, observers get edges with at most {@link #setResultSubdivisionPointsCount(int)} subdivision points,
+ * the full result is available from {@link #getSubdivisionPoints()} until {@link #close()}.
+ */
+public class OutOfCoreEdgeBundling implements Observable, Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(OutOfCoreEdgeBundling.class.getName());
+
+    private final double STEP_SIZE;
+    private final double COMPATIBILITY;
+    private final double K;
+    private final int CYCLES_COUNT;
+    private final int ITERATIONS_COUNT;
+
+    private final Node[] nodes;
+    private final Edge[] edges;
+    private final Path directory;
+
+    private MappedSubdivisionBuffer subdivisionPoints;
+    private MappedCompatibilityGraph compatibilityGraph;
+    private MappedForces forces;
+
+    // maximal and mean displacement of all subdivision points in the last iteration
+    private double maxDisplacement;
+    private double meanDisplacement;
+
+    private int blockSize = Configuration.DEFAULT_BLOCK_SIZE;
+    private int resultSubdivisionPointsCount = Configuration.DEFAULT_RESULT_SUBDIVISION_POINTS_COUNT;
+    private int parallelism = 1;
+
+    private final List<Observer> observers = new ArrayList<>();
+
+    // set by cancel(), possibly from another thread
+    private volatile boolean cancelled;
+    // maximal duration of a run in nanoseconds, 0 for no limit
+    private long timeout;
+    // System.nanoTime() at which the current run times out
+    private long deadline;
+
+    /**
+     * @param nodes array of nodes representing nodes of graph indexed by its ID
+     * @param edges array of edges representing edges of graph indexed by its ID
+     * @param STEP_SIZE see {@link ForceDirectedEdgeBundling}
+     * @param COMPATIBILITY see {@link ForceDirectedEdgeBundling}
+     * @param K see {@link ForceDirectedEdgeBundling}
+     * @param ITERATIONS_COUNT see {@link ForceDirectedEdgeBundling}
+     * @param CYCLES_COUNT see {@link ForceDirectedEdgeBundling}
+     * @param directory directory of the mapped files, which are deleted when no longer needed
+     */
+    public OutOfCoreEdgeBundling(Node[] nodes, Edge[] edges, double STEP_SIZE, double COMPATIBILITY, double K,
+                                 int ITERATIONS_COUNT, int CYCLES_COUNT, Path directory) {
+        this.STEP_SIZE = STEP_SIZE;
+        this.COMPATIBILITY = COMPATIBILITY;
+        this.K = K;
+        this.ITERATIONS_COUNT = ITERATIONS_COUNT;
+        this.CYCLES_COUNT = CYCLES_COUNT;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.directory = directory;
+    }
+
+    /**
+     * Uses default values for algorithm and {@link Configuration#DEFAULT_MAPPED_DIRECTORY}.
+     *
+     * @param nodes array of nodes representing nodes of graph indexed by its ID
+     * @param edges array of edges representing edges of graph indexed by its ID
+     */
+    public OutOfCoreEdgeBundling(Node[] nodes, Edge[] edges) {
+        this(nodes, edges,
+                Configuration.DEFAULT_STEP_SIZE,
+                Configuration.DEFAULT_COMPATIBILITY_THRESHOLD,
+                Configuration.DEFAULT_EDGE_STIFFNESS,
+                Configuration.DEFAULT_ITERATIONS_COUNT,
+                Configuration.DEFAULT_CYCLES_COUNT,
+                Paths.get(Configuration.DEFAULT_MAPPED_DIRECTORY));
+    }
+
+    /**
+     * Sets number of edges whose forces are calculated by one task
+     *
+     * @param blockSize
+     * @return
+     */
+    public OutOfCoreEdgeBundling setBlockSize(int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * Sets maximal number of subdivision points of edges given to observers when finished, edges with more points
+     * are resampled
+     *
+     * @param resultSubdivisionPointsCount
+     * @return
+     */
+    public OutOfCoreEdgeBundling setResultSubdivisionPointsCount(int resultSubdivisionPointsCount) {
+        if (resultSubdivisionPointsCount < 1)
+            throw new IllegalArgumentException("Result subdivision points count must be positive: "
+                    + resultSubdivisionPointsCount);
+        this.resultSubdivisionPointsCount = resultSubdivisionPointsCount;
+        return this;
+    }
+
+    /**
+     * Sets number of threads used to calculate forces, 1 (the calling thread only) by default
+     *
+     * @param parallelism
+     * @return
+     */
+    public OutOfCoreEdgeBundling setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets maximal duration of a run, after which it stops as if cancelled. 0 (default) for no limit.
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public OutOfCoreEdgeBundling setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Requests the run to stop, see {@link ForceDirectedEdgeBundling#cancel()}. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    private void checkCancelled() {
+        if (cancelled)
+            throw new CancellationException("Bundling cancelled");
+        if (timeout > 0 && System.nanoTime() - deadline > 0)
+            throw new CancellationException(String.format("Bundling timed out after %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeout)));
+    }
+
+    /**
+     * Runs FDEB Algorithm on selected dataset.
+     *
+     * @throws IOException if the mapped files cannot be created
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    public void run() throws IOException {
+        LOGGER.log(Level.INFO, String.format("Running out-of-core FDEB with %d edges, %d cycles, files in %s",
+                edges.length, CYCLES_COUNT, directory));
+
+        deadline = System.nanoTime() + timeout;
+        close();
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            runCycles(pool);
+        } catch (CancellationException e) {
+            LOGGER.log(Level.INFO, e.getMessage());
+            for (Observer observer : observers) {
+                observer.cancelled(e.getMessage());
+            }
+            throw e;
+        } finally {
+            if (compatibilityGraph != null)
+                compatibilityGraph.close();
+            compatibilityGraph = null;
+            if (pool != null)
+                pool.shutdown();
+        }
+
+        // observers get the result in the heap, resampled if it is too detailed
+        if (subdivisionPoints.getSubdivisionPointsCount() <= resultSubdivisionPointsCount)
+            subdivisionPoints.toBuffer().toEdges(edges);
+        else
+            subdivisionPoints.toBuffer(resultSubdivisionPointsCount).toEdges(edges);
+        notifyObservers(0, 0, true);
+    }
+
+    private void runCycles(ForkJoinPool pool) throws IOException {
+        checkCancelled();
+        double currentStepSize = STEP_SIZE;
+        double currIterationsCount = ITERATIONS_COUNT;
+        int currentSubdivisionPointsCount = Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT;
+
+        EdgeGeometry geometry = new EdgeGeometry(edges);
+        // each edge starts divided by its midpoint, as in the flat algorithm
+        subdivisionPoints = MappedSubdivisionBuffer.create(edges, directory);
+        compatibilityGraph = MappedCompatibilityGraph.score(geometry, COMPATIBILITY, directory, this::checkCancelled);
+        LOGGER.log(Level.INFO, String.format("%d compatible pairs", compatibilityGraph.getPairsCount()));
+        forces = new MappedForces(geometry.getLengths(), K, compatibilityGraph).setSubdivisionPoints(subdivisionPoints);
+
+        for (int cycle = 0; cycle < CYCLES_COUNT; cycle++) {
+            LOGGER.log(Level.INFO, String.format("Cycle: %d, %d points", cycle, subdivisionPoints.size()));
+
+            final int plannedIterationsCount = (int) Math.ceil(currIterationsCount);
+            for (int iter = 0; iter < plannedIterationsCount; iter++) {
+                checkCancelled();
+                notifyObservers(iter, cycle, false);
+
+                iterate(pool, currentSubdivisionPointsCount, currentStepSize);
+                for (Observer observer : observers) {
+                    observer.updateDisplacement(iter, cycle, maxDisplacement, meanDisplacement);
+                }
+            }
+            for (Observer observer : observers) {
+                observer.cycleFinished(cycle, plannedIterationsCount, 0);
+            }
+
+            currentStepSize /= 2;
+            currIterationsCount *= Configuration.DEFAULT_ITERATIONS_INCREASE_RATE;
+            currentSubdivisionPointsCount *= Configuration.DEFAULT_SUBDIVISION_POINTS_RATE;
+
+            resample(currentSubdivisionPointsCount);
+        }
+    }
+
+    private void resample(int subdivisionPointsCount) throws IOException {
+        MappedSubdivisionBuffer resampled = subdivisionPoints.resample(subdivisionPointsCount, directory);
+        subdivisionPoints.close();
+        subdivisionPoints = resampled;
+        forces.setSubdivisionPoints(resampled);
+    }
+
+    /**
+     * Performs one iteration: moves all subdivision points in the direction of total force applied on them.
+     *
+     * @param pool pool to use or {@code null} to use the calling thread only
+     * @param subdivisionPointsCount
+     * @param stepSize
+     */
+    private void iterate(ForkJoinPool pool, int subdivisionPointsCount, double stepSize) {
+        if (pool == null) {
+            for (int from = 0; from < edges.length; from += blockSize) {
+                forces.calculateNewPositions(from, Math.min(edges.length, from + blockSize), subdivisionPointsCount,
+                        stepSize);
+            }
+        } else {
+            pool.invoke(new BlockRangeTask(forces, 0, edges.length, blockSize, subdivisionPointsCount, stepSize));
+        }
+
+        subdivisionPoints.swap();
+
+        maxDisplacement = forces.getMaxDisplacement(0, edges.length);
+        meanDisplacement = edges.length == 0 ? 0
+                : forces.getDisplacementSum(0, edges.length) / ((double) edges.length * subdivisionPointsCount);
+    }
+
+    /**
+     * Task moving subdivision points of a range of edges, splitting the range among threads at multiples of the
+     * block size, so each thread works on whole blocks of edges.
+     */
+    @SuppressWarnings("serial")
+    private static class BlockRangeTask extends RecursiveAction {
+
+        private final MappedForces forces;
+        private final int fromEdgeID;
+        private final int toEdgeID;
+        private final int blockSize;
+        private final int subdivisionPointsCount;
+        private final double stepSize;
+
+        BlockRangeTask(MappedForces forces, int fromEdgeID, int toEdgeID, int blockSize, int subdivisionPointsCount,
+                       double stepSize) {
+            this.forces = forces;
+            this.fromEdgeID = fromEdgeID;
+            this.toEdgeID = toEdgeID;
+            this.blockSize = blockSize;
+            this.subdivisionPointsCount = subdivisionPointsCount;
+            this.stepSize = stepSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (toEdgeID - fromEdgeID <= blockSize) {
+                forces.calculateNewPositions(fromEdgeID, toEdgeID, subdivisionPointsCount, stepSize);
+                return;
+            }
+            final int blocksCount = (toEdgeID - fromEdgeID + blockSize - 1) / blockSize;
+            final int middle = fromEdgeID + blocksCount / 2 * blockSize;
+            invokeAll(new BlockRangeTask(forces, fromEdgeID, middle, blockSize, subdivisionPointsCount, stepSize),
+                    new BlockRangeTask(forces, middle, toEdgeID, blockSize, subdivisionPointsCount, stepSize));
+        }
+    }
+
+    /**
+     * Returns current subdivision points of all edges, valid until {@link #close()} or the next run
+     *
+     * @return
+     */
+    public MappedSubdivisionBuffer getSubdivisionPoints() {
+        return subdivisionPoints;
+    }
+
+    public double getMaxDisplacement() {
+        return maxDisplacement;
+    }
+
+    public double getMeanDisplacement() {
+        return meanDisplacement;
+    }
+
+    /**
+     * Deletes mapped files of the last run
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (subdivisionPoints != null)
+            subdivisionPoints.close();
+        subdivisionPoints = null;
+    }
+
+    @Override
+    public void registerObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void notifyObservers(int iteration, int cycle, boolean finished) {
+        for (Observer observer : observers) {
+            if (finished)
+                observer.finished(nodes, edges);
+            else
+                observer.updateProcessInfo(iteration, cycle);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package core;
+
+/**
+ * Copy of subdivision points of all edges at some iteration of the algorithm. Points of edge {@code e} are
+ * {@code getX()[getOffset(e)]} to {@code getX()[getOffset(e + 1) - 1]}, from start-point to end-point.
+ * Snapshots are not modified once published; returned arrays must not be modified either.
+ */
+public class PolylineSnapshot {
+
+    private double[] x;
+    private double[] y;
+    private int[] offsets;
+    private int iteration;
+    private int cycle;
+
+    private PolylineSnapshot() {
+    }
+
+    /**
+     * Copies given points into {@code reused} if its buffers are large enough, otherwise into a new snapshot
+     *
+     * @param subdivisionPoints
+     * @param iteration
+     * @param cycle
+     * @param reused snapshot which is no longer used or {@code null}
+     * @return
+     */
+    static PolylineSnapshot copyOf(SubdivisionBuffer subdivisionPoints, int iteration, int cycle,
+                                   PolylineSnapshot reused) {
+        final int size = subdivisionPoints.size();
+        final int edgesCount = subdivisionPoints.getEdgesCount();
+
+        PolylineSnapshot snapshot = reused != null ? reused : new PolylineSnapshot();
+        if (snapshot.x == null || snapshot.x.length < size) {
+            snapshot.x = new double[size];
+            snapshot.y = new double[size];
+        }
+        if (snapshot.offsets == null || snapshot.offsets.length != edgesCount + 1)
+            snapshot.offsets = new int[edgesCount + 1];
+
+        System.arraycopy(subdivisionPoints.getX(), 0, snapshot.x, 0, size);
+        System.arraycopy(subdivisionPoints.getY(), 0, snapshot.y, 0, size);
+        for (int i = 0; i <= edgesCount; i++) {
+            snapshot.offsets[i] = subdivisionPoints.getOffset(i);
+        }
+        snapshot.iteration = iteration;
+        snapshot.cycle = cycle;
+        return snapshot;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public int getEdgesCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns index of start-point of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getOffset(int edgeID) {
+        return offsets[edgeID];
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public int getCycle() {
+        return cycle;
+    }
+}
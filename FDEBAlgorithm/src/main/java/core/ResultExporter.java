@@ -0,0 +1,420 @@
+package core;
+
+import model.Edge;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams bundled edges into a file or stream in one of {@link Format}s, optionally compressed by gzip.
+ *
+ * Output is encoded directly into a reused byte buffer which is written to a channel whenever it fills up,
+ * so memory use does not depend on the size of the graph and no strings are built per point.
+ */
+public class ResultExporter {
+
+    /**
+     * Format of exported edges
+     */
+    public enum Format {
+        /**
+         * Array of edges, each an array of its points {"x":x,"y":y} in canvas coordinates
+         */
+        JSON(".json"),
+        /**
+         * FeatureCollection of LineString features, one per edge, with points in longitude, latitude, properties
+         * hold index of the edge and names of its nodes
+         */
+        GEOJSON(".geojson"),
+        /**
+         * Little-endian binary: int magic 'FD32', int version, int edges count, int points count,
+         * int offset of first point of each edge and total points count, float x, float y of each point
+         * in canvas coordinates
+         */
+        FLOAT32(".f32");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public static final int FLOAT32_MAGIC = 0x32334446;
+    public static final int FLOAT32_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int DEFAULT_PRECISION = 6;
+    private static final int MAX_PRECISION = 15;
+
+    private final Format format;
+    private boolean gzip;
+    private int precision = DEFAULT_PRECISION;
+    private long precisionFactor = pow10(DEFAULT_PRECISION);
+    private IOParser.LatLongConverter converter;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final StringBuilder number = new StringBuilder(32);
+    private final byte[] digits = new byte[20];
+    private WritableByteChannel channel;
+
+    public ResultExporter(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets whether output is compressed by gzip
+     *
+     * @param gzip
+     * @return
+     */
+    public ResultExporter setGzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * Sets number of decimal digits of GeoJSON coordinates, 6 by default (about 0.1 m)
+     *
+     * @param precision value in [0, 15]
+     * @return
+     */
+    public ResultExporter setPrecision(int precision) {
+        if (precision < 0 || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("Precision must be in [0, " + MAX_PRECISION + "]: " + precision);
+        this.precision = precision;
+        this.precisionFactor = pow10(precision);
+        return this;
+    }
+
+    /**
+     * Sets converter of canvas coordinates to latitude and longitude, required by GeoJSON
+     *
+     * @param converter
+     * @return
+     */
+    ResultExporter setConverter(IOParser.LatLongConverter converter) {
+        this.converter = converter;
+        return this;
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * Exports given edges into given file, which is created or overwritten
+     *
+     * @param path
+     * @param edges
+     * @param subdivisionPoints bundled subdivision points of {@code edges}
+     * @throws IOException
+     */
+    public void export(Path path, Edge[] edges, SubdivisionBuffer subdivisionPoints) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (gzip) {
+                try (GZIPOutputStream out = gzip(Channels.newOutputStream(file))) {
+                    export(Channels.newChannel(out), edges, subdivisionPoints);
+                }
+            } else {
+                export(file, edges, subdivisionPoints);
+            }
+        }
+    }
+
+    /**
+     * Exports given edges into given stream, the stream is flushed but not closed
+     *
+     * @param out
+     * @param edges
+     * @param subdivisionPoints bundled subdivision points of {@code edges}
+     * @throws IOException
+     */
+    public void export(OutputStream out, Edge[] edges, SubdivisionBuffer subdivisionPoints) throws IOException {
+        if (gzip) {
+            // closing gzip stream releases its deflater, the given stream stays open
+            try (GZIPOutputStream gzipOut = gzip(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            })) {
+                export(Channels.newChannel(gzipOut), edges, subdivisionPoints);
+            }
+        } else {
+            export(Channels.newChannel(out), edges, subdivisionPoints);
+            out.flush();
+        }
+    }
+
+    /**
+     * Creates gzip stream with the fastest compression level, text of coordinates compresses well even so and
+     * higher levels would take longer than encoding
+     *
+     * @param out
+     * @return
+     * @throws IOException
+     */
+    private static GZIPOutputStream gzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private void export(WritableByteChannel channel, Edge[] edges, SubdivisionBuffer subdivisionPoints)
+            throws IOException {
+        if (subdivisionPoints.getEdgesCount() != edges.length)
+            throw new IllegalArgumentException(String.format("Subdivision points of %d edges given for %d edges",
+                    subdivisionPoints.getEdgesCount(), edges.length));
+        if (format == Format.GEOJSON && converter == null)
+            throw new IllegalStateException("GeoJSON export requires converter to latitude and longitude");
+
+        this.channel = channel;
+        buffer.clear();
+        try {
+            switch (format) {
+                case JSON:
+                    writeJson(subdivisionPoints);
+                    break;
+                case GEOJSON:
+                    writeGeoJson(edges, subdivisionPoints);
+                    break;
+                case FLOAT32:
+                    writeFloat32(subdivisionPoints);
+                    break;
+            }
+            flush();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private void writeJson(SubdivisionBuffer subdivisionPoints) throws IOException {
+        final double[] x = subdivisionPoints.getX();
+        final double[] y = subdivisionPoints.getY();
+
+        put("[\n");
+        for (int i = 0; i < subdivisionPoints.getEdgesCount(); i++) {
+            if (i > 0)
+                put(",\n");
+            put('[');
+            for (int p = subdivisionPoints.getOffset(i); p < subdivisionPoints.getOffset(i + 1); p++) {
+                if (p > subdivisionPoints.getOffset(i))
+                    put(',');
+                put("{\"x\":");
+                putDouble(x[p]);
+                put(",\"y\":");
+                putDouble(y[p]);
+                put('}');
+            }
+            put(']');
+        }
+        put("\n]");
+    }
+
+    private void writeGeoJson(Edge[] edges, SubdivisionBuffer subdivisionPoints) throws IOException {
+        final double[] x = subdivisionPoints.getX();
+        final double[] y = subdivisionPoints.getY();
+
+        put("{\"type\":\"FeatureCollection\",\"features\":[\n");
+        for (int i = 0; i < edges.length; i++) {
+            if (i > 0)
+                put(",\n");
+            put("{\"type\":\"Feature\",\"properties\":{\"id\":");
+            putLong(i);
+            put(",\"from\":");
+            putString(edges[i].getFrom().getName());
+            put(",\"to\":");
+            putString(edges[i].getTo().getName());
+            put("},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+            for (int p = subdivisionPoints.getOffset(i); p < subdivisionPoints.getOffset(i + 1); p++) {
+                if (p > subdivisionPoints.getOffset(i))
+                    put(',');
+                double[] latLng = converter.convertXYToLatLng(x[p], y[p]);
+                put('[');
+                putFixed(latLng[1]);
+                put(',');
+                putFixed(latLng[0]);
+                put(']');
+            }
+            put("]}}");
+        }
+        put("\n]}\n");
+    }
+
+    private void writeFloat32(SubdivisionBuffer subdivisionPoints) throws IOException {
+        final double[] x = subdivisionPoints.getX();
+        final double[] y = subdivisionPoints.getY();
+        final int edgesCount = subdivisionPoints.getEdgesCount();
+        final int pointsCount = subdivisionPoints.size();
+
+        ensureRemaining(16);
+        buffer.putInt(FLOAT32_MAGIC).putInt(FLOAT32_VERSION).putInt(edgesCount).putInt(pointsCount);
+        for (int i = 0; i <= edgesCount; i++) {
+            ensureRemaining(4);
+            buffer.putInt(subdivisionPoints.getOffset(i));
+        }
+        for (int p = 0; p < pointsCount; p++) {
+            ensureRemaining(8);
+            buffer.putFloat((float) x[p]).putFloat((float) y[p]);
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void put(char c) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) c);
+    }
+
+    /**
+     * Puts ASCII string
+     *
+     * @param s
+     * @throws IOException
+     */
+    private void put(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    /**
+     * Puts JSON string literal, non-ASCII characters are escaped
+     *
+     * @param s string or {@code null}
+     * @throws IOException
+     */
+    private void putString(String s) throws IOException {
+        if (s == null) {
+            put("null");
+            return;
+        }
+
+        put('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if (c < 0x20 || c >= 0x7F) {
+                put("\\u");
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    put(Character.forDigit((c >> shift) & 0xF, 16));
+                }
+            } else {
+                put(c);
+            }
+        }
+        put('"');
+    }
+
+    private void putLong(long value) throws IOException {
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        ensureRemaining(length);
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+
+    /**
+     * Puts shortest decimal representation of given value which reads back as the same double
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void putDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            put("null");
+            return;
+        }
+        number.setLength(0);
+        number.append(value);
+        for (int i = 0; i < number.length(); i++) {
+            put(number.charAt(i));
+        }
+    }
+
+    /**
+     * Puts given value rounded to {@code precision} decimal digits, without trailing zeros
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void putFixed(double value) throws IOException {
+        // values too large to be scaled exactly are written in full
+        if (Double.isNaN(value) || Math.abs(value) * precisionFactor >= 1L << 52) {
+            putDouble(value);
+            return;
+        }
+
+        long scaled = Math.round(value * precisionFactor);
+        if (scaled < 0) {
+            put('-');
+            scaled = -scaled;
+        }
+        putLong(scaled / precisionFactor);
+
+        long fraction = scaled % precisionFactor;
+        if (fraction == 0)
+            return;
+        int length = precision;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            length--;
+        }
+        put('.');
+        ensureRemaining(length);
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        buffer.put(digits, 0, length);
+    }
+}
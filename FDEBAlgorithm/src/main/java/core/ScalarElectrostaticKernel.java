@@ -0,0 +1,36 @@
+package core;
+
+/**
+ * Electrostatic kernel processing compatible edges one by one, in their order.
+ */
+public class ScalarElectrostaticKernel implements ElectrostaticKernel {
+
+    @Override
+    public void addForce(double[] pointsX, double[] pointsY, int p, int i, int[] pointOffsets, int from, int to,
+                         double[] force) {
+        double x = 0;
+        double y = 0;
+
+        for (int k = from; k < to; k++) {
+
+            // corresponding subdivision point of compatible edge
+            final int q = pointOffsets[k] + i;
+
+            double forceX = pointsX[q] - pointsX[p];
+            double forceY = pointsY[q] - pointsY[p];
+
+            // ignore force between current edge and its compatible edge of its too small
+            if(Math.abs(forceX) < EPS || Math.abs(forceY) < EPS)
+                continue;
+
+            double divisor = Math.sqrt(forceX * forceX + forceY * forceY);
+
+            x += forceX / divisor;
+            y += forceY / divisor;
+
+        }
+
+        force[0] += x;
+        force[1] += y;
+    }
+}
@@ -0,0 +1,36 @@
+package core;
+
+/**
+ * Single precision electrostatic kernel processing compatible edges one by one, in their order.
+ */
+public class ScalarFloatElectrostaticKernel implements FloatElectrostaticKernel {
+
+    @Override
+    public void addForce(float[] pointsX, float[] pointsY, int p, int i, int[] pointOffsets, int from, int to,
+                         float[] force) {
+        float x = 0;
+        float y = 0;
+
+        for (int k = from; k < to; k++) {
+
+            // corresponding subdivision point of compatible edge
+            final int q = pointOffsets[k] + i;
+
+            float forceX = pointsX[q] - pointsX[p];
+            float forceY = pointsY[q] - pointsY[p];
+
+            // ignore force between current edge and its compatible edge of its too small
+            if(Math.abs(forceX) < EPS || Math.abs(forceY) < EPS)
+                continue;
+
+            float divisor = (float) Math.sqrt(forceX * forceX + forceY * forceY);
+
+            x += forceX / divisor;
+            y += forceY / divisor;
+
+        }
+
+        force[0] += x;
+        force[1] += y;
+    }
+}
@@ -0,0 +1,165 @@
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Worker process of {@link ShardedEdgeBundling}, calculating forces of one contiguous range of edges.
+ *
+ * The worker connects to the coordinator on the loopback interface, sends its shard index and then executes commands
+ * until {@link #STOP} or until the connection is closed:
+ * <ul>
+ * <li>{@link #SETUP} - range of edges, K, lengths of all edges, offsets and file of the mapped compatibility graph</li>
+ * <li>{@link #POINTS} - files of current and next positions, subdivision points count and offsets of a new mapped
+ * buffer, acknowledged by a single byte</li>
+ * <li>{@link #ITERATE} - step size; the worker writes new positions of its edges, swaps its buffer and replies with
+ * maximal and summed displacement of its subdivision points</li>
+ * </ul>
+ * Positions of edges of other shards are read from the shared files, which the coordinator swaps only after all
+ * workers replied, so every iteration reads positions of the previous one, as in the single process algorithm.
+ *
+ * Usage: {@code java -cp <classpath> core.ShardWorker <port> <shard>}
+ */
+class ShardWorker {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardWorker.class.getName());
+
+    static final byte SETUP = 0;
+    static final byte POINTS = 1;
+    static final byte ITERATE = 2;
+    static final byte STOP = 3;
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private int fromEdgeID;
+    private int toEdgeID;
+    private MappedCompatibilityGraph compatibilityGraph;
+    private MappedSubdivisionBuffer subdivisionPoints;
+    private MappedForces forces;
+
+    private ShardWorker(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java core.ShardWorker <port> <shard>");
+            System.exit(2);
+        }
+        final int port = Integer.parseInt(args[0]);
+        final int shard = Integer.parseInt(args[1]);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            new ShardWorker(socket).serve(shard);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Worker " + shard + " failed", e);
+            System.exit(1);
+        }
+    }
+
+    private void serve(int shard) throws IOException {
+        out.writeInt(shard);
+        out.flush();
+        try {
+            while (true) {
+                final byte command = in.readByte();
+                switch (command) {
+                    case SETUP:
+                        setup();
+                        break;
+                    case POINTS:
+                        points();
+                        break;
+                    case ITERATE:
+                        iterate();
+                        break;
+                    case STOP:
+                        return;
+                    default:
+                        throw new IOException("Unknown command: " + command);
+                }
+            }
+        } finally {
+            if (subdivisionPoints != null)
+                subdivisionPoints.close();
+            if (compatibilityGraph != null)
+                compatibilityGraph.close();
+        }
+    }
+
+    private void setup() throws IOException {
+        fromEdgeID = in.readInt();
+        toEdgeID = in.readInt();
+        final double K = in.readDouble();
+        final double[] lengths = readDoubles(in);
+        final long[] offsets = readLongs(in);
+        compatibilityGraph = MappedCompatibilityGraph.open(offsets, Paths.get(in.readUTF()));
+        forces = new MappedForces(lengths, K, compatibilityGraph);
+    }
+
+    private void points() throws IOException {
+        final String pointsFile = in.readUTF();
+        final String nextPointsFile = in.readUTF();
+        final int subdivisionPointsCount = in.readInt();
+        final long[] offsets = readLongs(in);
+
+        if (subdivisionPoints != null)
+            subdivisionPoints.close();
+        subdivisionPoints = MappedSubdivisionBuffer.open(Paths.get(pointsFile), Paths.get(nextPointsFile), offsets,
+                subdivisionPointsCount);
+        forces.setSubdivisionPoints(subdivisionPoints);
+        out.writeByte(POINTS);
+        out.flush();
+    }
+
+    private void iterate() throws IOException {
+        final double stepSize = in.readDouble();
+        forces.calculateNewPositions(fromEdgeID, toEdgeID, subdivisionPoints.getSubdivisionPointsCount(), stepSize);
+        subdivisionPoints.swap();
+
+        out.writeDouble(forces.getMaxDisplacement(fromEdgeID, toEdgeID));
+        out.writeDouble(forces.getDisplacementSum(fromEdgeID, toEdgeID));
+        out.flush();
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+}
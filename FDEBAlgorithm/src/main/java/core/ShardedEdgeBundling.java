@@ -0,0 +1,536 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Variant of {@link OutOfCoreEdgeBundling} calculating forces in several local worker processes, see
+ * {@link ShardWorker}.
+ *
+ * Edges are split into contiguous shards of about the same work, i.e. sum of numbers of compatible edges. The
+ * coordinator scores compatible edges and keeps subdivision points in memory-mapped files shared with the workers;
+ * each worker maps them, writes new positions of its shard only and reads positions of compatible edges of other
+ * shards from the shared file. The coordinator swaps current and next positions once all workers finished the
+ * iteration and resamples subdivision points between cycles, so each iteration reads positions of the previous one
+ * and results are the same as those of the single process algorithm with the scalar kernel.
+ *
+ * Workers are started with the class path of this process and talk to it over loopback sockets; they are stopped
+ * when the run ends. A failed worker fails the run with {@link IOException}.
+ */
+public class ShardedEdgeBundling implements Observable, Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardedEdgeBundling.class.getName());
+
+    private final double STEP_SIZE;
+    private final double COMPATIBILITY;
+    private final double K;
+    private final int CYCLES_COUNT;
+    private final int ITERATIONS_COUNT;
+
+    private final Node[] nodes;
+    private final Edge[] edges;
+    private final Path directory;
+
+    private MappedSubdivisionBuffer subdivisionPoints;
+    private MappedCompatibilityGraph compatibilityGraph;
+
+    // first edge of each shard, followed by number of edges
+    private int[] shards;
+    private Process[] workers;
+    private Socket[] sockets;
+    private DataInputStream[] inputs;
+    private DataOutputStream[] outputs;
+
+    // maximal and mean displacement of all subdivision points in the last iteration
+    private double maxDisplacement;
+    private double meanDisplacement;
+
+    private int shardsCount = Configuration.DEFAULT_SHARDS_COUNT;
+    private List<String> workerOptions = new ArrayList<>();
+    private int resultSubdivisionPointsCount = Configuration.DEFAULT_RESULT_SUBDIVISION_POINTS_COUNT;
+
+    private final List<Observer> observers = new ArrayList<>();
+
+    // set by cancel(), possibly from another thread
+    private volatile boolean cancelled;
+    // maximal duration of a run in nanoseconds, 0 for no limit
+    private long timeout;
+    // System.nanoTime() at which the current run times out
+    private long deadline;
+
+    /**
+     * @param nodes array of nodes representing nodes of graph indexed by its ID
+     * @param edges array of edges representing edges of graph indexed by its ID
+     * @param STEP_SIZE see {@link ForceDirectedEdgeBundling}
+     * @param COMPATIBILITY see {@link ForceDirectedEdgeBundling}
+     * @param K see {@link ForceDirectedEdgeBundling}
+     * @param ITERATIONS_COUNT see {@link ForceDirectedEdgeBundling}
+     * @param CYCLES_COUNT see {@link ForceDirectedEdgeBundling}
+     * @param directory directory of the mapped files, which are deleted when no longer needed
+     */
+    public ShardedEdgeBundling(Node[] nodes, Edge[] edges, double STEP_SIZE, double COMPATIBILITY, double K,
+                               int ITERATIONS_COUNT, int CYCLES_COUNT, Path directory) {
+        this.STEP_SIZE = STEP_SIZE;
+        this.COMPATIBILITY = COMPATIBILITY;
+        this.K = K;
+        this.ITERATIONS_COUNT = ITERATIONS_COUNT;
+        this.CYCLES_COUNT = CYCLES_COUNT;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.directory = directory;
+    }
+
+    /**
+     * Uses default values for algorithm and {@link Configuration#DEFAULT_MAPPED_DIRECTORY}.
+     *
+     * @param nodes array of nodes representing nodes of graph indexed by its ID
+     * @param edges array of edges representing edges of graph indexed by its ID
+     */
+    public ShardedEdgeBundling(Node[] nodes, Edge[] edges) {
+        this(nodes, edges,
+                Configuration.DEFAULT_STEP_SIZE,
+                Configuration.DEFAULT_COMPATIBILITY_THRESHOLD,
+                Configuration.DEFAULT_EDGE_STIFFNESS,
+                Configuration.DEFAULT_ITERATIONS_COUNT,
+                Configuration.DEFAULT_CYCLES_COUNT,
+                Paths.get(Configuration.DEFAULT_MAPPED_DIRECTORY));
+    }
+
+    /**
+     * Sets number of worker processes
+     *
+     * @param shardsCount
+     * @return
+     */
+    public ShardedEdgeBundling setShardsCount(int shardsCount) {
+        if (shardsCount < 1)
+            throw new IllegalArgumentException("Shards count must be positive: " + shardsCount);
+        this.shardsCount = shardsCount;
+        return this;
+    }
+
+    /**
+     * Sets options of JVMs of workers, e.g. {@code -Xmx256m}
+     *
+     * @param workerOptions
+     * @return
+     */
+    public ShardedEdgeBundling setWorkerOptions(String... workerOptions) {
+        this.workerOptions = new ArrayList<>(Arrays.asList(workerOptions));
+        return this;
+    }
+
+    /**
+     * Sets maximal number of subdivision points of edges given to observers when finished, see
+     * {@link OutOfCoreEdgeBundling#setResultSubdivisionPointsCount(int)}
+     *
+     * @param resultSubdivisionPointsCount
+     * @return
+     */
+    public ShardedEdgeBundling setResultSubdivisionPointsCount(int resultSubdivisionPointsCount) {
+        if (resultSubdivisionPointsCount < 1)
+            throw new IllegalArgumentException("Result subdivision points count must be positive: "
+                    + resultSubdivisionPointsCount);
+        this.resultSubdivisionPointsCount = resultSubdivisionPointsCount;
+        return this;
+    }
+
+    /**
+     * Sets maximal duration of a run, after which it stops as if cancelled. 0 (default) for no limit.
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public ShardedEdgeBundling setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Requests the run to stop, see {@link ForceDirectedEdgeBundling#cancel()}. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    private void checkCancelled() {
+        if (cancelled)
+            throw new CancellationException("Bundling cancelled");
+        if (timeout > 0 && System.nanoTime() - deadline > 0)
+            throw new CancellationException(String.format("Bundling timed out after %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeout)));
+    }
+
+    /**
+     * Runs FDEB Algorithm on selected dataset.
+     *
+     * @throws IOException if the mapped files cannot be created or a worker fails
+     * @throws CancellationException if the run was cancelled or timed out
+     */
+    public void run() throws IOException {
+        LOGGER.log(Level.INFO, String.format("Running sharded FDEB with %d edges, %d cycles, %d workers, files in %s",
+                edges.length, CYCLES_COUNT, shardsCount, directory));
+
+        deadline = System.nanoTime() + timeout;
+        close();
+        try {
+            runCycles();
+        } catch (CancellationException e) {
+            LOGGER.log(Level.INFO, e.getMessage());
+            for (Observer observer : observers) {
+                observer.cancelled(e.getMessage());
+            }
+            throw e;
+        } finally {
+            stopWorkers();
+            if (compatibilityGraph != null)
+                compatibilityGraph.close();
+            compatibilityGraph = null;
+        }
+
+        // observers get the result in the heap, resampled if it is too detailed
+        if (subdivisionPoints.getSubdivisionPointsCount() <= resultSubdivisionPointsCount)
+            subdivisionPoints.toBuffer().toEdges(edges);
+        else
+            subdivisionPoints.toBuffer(resultSubdivisionPointsCount).toEdges(edges);
+        notifyObservers(0, 0, true);
+    }
+
+    private void runCycles() throws IOException {
+        checkCancelled();
+        double currentStepSize = STEP_SIZE;
+        double currIterationsCount = ITERATIONS_COUNT;
+        int currentSubdivisionPointsCount = Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT;
+
+        EdgeGeometry geometry = new EdgeGeometry(edges);
+        // each edge starts divided by its midpoint, as in the flat algorithm
+        subdivisionPoints = MappedSubdivisionBuffer.create(edges, directory);
+        compatibilityGraph = MappedCompatibilityGraph.score(geometry, COMPATIBILITY, directory, this::checkCancelled);
+        LOGGER.log(Level.INFO, String.format("%d compatible pairs", compatibilityGraph.getPairsCount()));
+
+        shards = partition(compatibilityGraph, edges.length, shardsCount);
+        startWorkers(geometry.getLengths());
+        sendPoints();
+
+        for (int cycle = 0; cycle < CYCLES_COUNT; cycle++) {
+            LOGGER.log(Level.INFO, String.format("Cycle: %d, %d points", cycle, subdivisionPoints.size()));
+
+            final int plannedIterationsCount = (int) Math.ceil(currIterationsCount);
+            for (int iter = 0; iter < plannedIterationsCount; iter++) {
+                checkCancelled();
+                notifyObservers(iter, cycle, false);
+
+                iterate(currentSubdivisionPointsCount, currentStepSize);
+                for (Observer observer : observers) {
+                    observer.updateDisplacement(iter, cycle, maxDisplacement, meanDisplacement);
+                }
+            }
+            for (Observer observer : observers) {
+                observer.cycleFinished(cycle, plannedIterationsCount, 0);
+            }
+
+            currentStepSize /= 2;
+            currIterationsCount *= Configuration.DEFAULT_ITERATIONS_INCREASE_RATE;
+            currentSubdivisionPointsCount *= Configuration.DEFAULT_SUBDIVISION_POINTS_RATE;
+
+            MappedSubdivisionBuffer previous = subdivisionPoints;
+            subdivisionPoints = previous.resample(currentSubdivisionPointsCount, directory);
+            try {
+                // workers close files of the previous buffer before they are deleted
+                sendPoints();
+            } finally {
+                previous.close();
+            }
+        }
+    }
+
+    /**
+     * Splits edges into contiguous ranges with about the same sum of numbers of compatible edges plus one
+     *
+     * @param compatibilityGraph
+     * @param edgesCount
+     * @param shardsCount
+     * @return first edge of each shard, followed by number of edges
+     */
+    static int[] partition(MappedCompatibilityGraph compatibilityGraph, int edgesCount, int shardsCount) {
+        final double total = compatibilityGraph.getOffset(edgesCount) + edgesCount;
+        int[] shards = new int[shardsCount + 1];
+        int edgeID = 0;
+        for (int s = 1; s < shardsCount; s++) {
+            final double bound = total * s / shardsCount;
+            while (edgeID < edgesCount && compatibilityGraph.getOffset(edgeID) + edgeID < bound) {
+                edgeID++;
+            }
+            shards[s] = edgeID;
+        }
+        shards[shardsCount] = edgesCount;
+        return shards;
+    }
+
+    /**
+     * Starts worker processes, waits for them to connect and sends them their shards and the compatibility graph
+     *
+     * @param lengths lengths of all edges
+     * @throws IOException
+     */
+    private void startWorkers(double[] lengths) throws IOException {
+        workers = new Process[shardsCount];
+        sockets = new Socket[shardsCount];
+        inputs = new DataInputStream[shardsCount];
+        outputs = new DataOutputStream[shardsCount];
+
+        try (ServerSocket server = new ServerSocket(0, shardsCount, InetAddress.getLoopbackAddress())) {
+            for (int s = 0; s < shardsCount; s++) {
+                List<String> command = new ArrayList<>();
+                command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+                command.addAll(workerOptions);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardWorker.class.getName());
+                command.add(Integer.toString(server.getLocalPort()));
+                command.add(Integer.toString(s));
+                workers[s] = new ProcessBuilder(command).inheritIO().start();
+            }
+
+            final long connectDeadline = System.nanoTime()
+                    + TimeUnit.SECONDS.toNanos(Configuration.DEFAULT_WORKER_TIMEOUT_SECONDS);
+            server.setSoTimeout(100);
+            for (int connected = 0; connected < shardsCount; ) {
+                checkCancelled();
+                for (int s = 0; s < shardsCount; s++) {
+                    if (sockets[s] == null && !workers[s].isAlive())
+                        throw new IOException(String.format("Worker %d exited with %d", s, workers[s].exitValue()));
+                }
+                if (System.nanoTime() - connectDeadline > 0)
+                    throw new IOException(String.format("Only %d of %d workers connected in %d s", connected,
+                            shardsCount, Configuration.DEFAULT_WORKER_TIMEOUT_SECONDS));
+
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final int s = in.readInt();
+                if (s < 0 || s >= shardsCount || sockets[s] != null) {
+                    socket.close();
+                    throw new IOException("Unexpected worker " + s);
+                }
+                sockets[s] = socket;
+                inputs[s] = in;
+                outputs[s] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                connected++;
+            }
+        }
+
+        long[] offsets = new long[edges.length + 1];
+        for (int i = 0; i <= edges.length; i++) {
+            offsets[i] = compatibilityGraph.getOffset(i);
+        }
+        for (int s = 0; s < shardsCount; s++) {
+            DataOutputStream out = outputs[s];
+            try {
+                out.writeByte(ShardWorker.SETUP);
+                out.writeInt(shards[s]);
+                out.writeInt(shards[s + 1]);
+                out.writeDouble(K);
+                ShardWorker.writeDoubles(out, lengths);
+                ShardWorker.writeLongs(out, offsets);
+                out.writeUTF(compatibilityGraph.getNeighboursFile().toString());
+                out.flush();
+            } catch (IOException e) {
+                throw workerFailed(s, e);
+            }
+        }
+        LOGGER.log(Level.INFO, String.format("%d workers started, shards %s", shardsCount, Arrays.toString(shards)));
+    }
+
+    /**
+     * Makes workers map current subdivision points and waits until all of them did
+     *
+     * @throws IOException
+     */
+    private void sendPoints() throws IOException {
+        long[] offsets = new long[edges.length + 1];
+        for (int i = 0; i <= edges.length; i++) {
+            offsets[i] = subdivisionPoints.getOffset(i);
+        }
+        for (int s = 0; s < shardsCount; s++) {
+            DataOutputStream out = outputs[s];
+            try {
+                out.writeByte(ShardWorker.POINTS);
+                out.writeUTF(subdivisionPoints.getPointsFile().toString());
+                out.writeUTF(subdivisionPoints.getNextPointsFile().toString());
+                out.writeInt(subdivisionPoints.getSubdivisionPointsCount());
+                ShardWorker.writeLongs(out, offsets);
+                out.flush();
+            } catch (IOException e) {
+                throw workerFailed(s, e);
+            }
+        }
+        for (int s = 0; s < shardsCount; s++) {
+            final byte reply;
+            try {
+                reply = inputs[s].readByte();
+            } catch (IOException e) {
+                throw workerFailed(s, e);
+            }
+            if (reply != ShardWorker.POINTS)
+                throw new IOException(String.format("Worker %d failed to map points", s));
+        }
+    }
+
+    /**
+     * Performs one iteration in all workers and makes their new positions current.
+     *
+     * @param subdivisionPointsCount
+     * @param stepSize
+     * @throws IOException
+     */
+    private void iterate(int subdivisionPointsCount, double stepSize) throws IOException {
+        for (int s = 0; s < shardsCount; s++) {
+            try {
+                outputs[s].writeByte(ShardWorker.ITERATE);
+                outputs[s].writeDouble(stepSize);
+                outputs[s].flush();
+            } catch (IOException e) {
+                throw workerFailed(s, e);
+            }
+        }
+
+        double max = 0;
+        double sum = 0;
+        for (int s = 0; s < shardsCount; s++) {
+            try {
+                max = Math.max(max, inputs[s].readDouble());
+                sum += inputs[s].readDouble();
+            } catch (IOException e) {
+                throw workerFailed(s, e);
+            }
+        }
+        subdivisionPoints.swap();
+
+        maxDisplacement = max;
+        meanDisplacement = edges.length == 0 ? 0 : sum / ((double) edges.length * subdivisionPointsCount);
+    }
+
+    /**
+     * Returns exception reporting failure of communication with given worker, usually because it exited
+     */
+    private IOException workerFailed(int s, IOException cause) {
+        if (workers[s].isAlive())
+            return new IOException(String.format("Worker %d failed: %s", s, cause.getMessage()), cause);
+        return new IOException(String.format("Worker %d exited with %d", s, workers[s].exitValue()), cause);
+    }
+
+    /**
+     * Stops workers, killing those which do not exit in time
+     */
+    private void stopWorkers() {
+        if (workers == null)
+            return;
+        for (int s = 0; s < shardsCount; s++) {
+            try {
+                if (outputs[s] != null) {
+                    outputs[s].writeByte(ShardWorker.STOP);
+                    outputs[s].flush();
+                }
+                if (sockets[s] != null)
+                    sockets[s].close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to stop worker " + s, e);
+            }
+        }
+        for (int s = 0; s < shardsCount; s++) {
+            if (workers[s] == null)
+                continue;
+            try {
+                if (!workers[s].waitFor(Configuration.DEFAULT_WORKER_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                    workers[s].destroyForcibly();
+            } catch (InterruptedException e) {
+                workers[s].destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers = null;
+        sockets = null;
+        inputs = null;
+        outputs = null;
+    }
+
+    /**
+     * Returns current subdivision points of all edges, valid until {@link #close()} or the next run
+     *
+     * @return
+     */
+    public MappedSubdivisionBuffer getSubdivisionPoints() {
+        return subdivisionPoints;
+    }
+
+    public double getMaxDisplacement() {
+        return maxDisplacement;
+    }
+
+    public double getMeanDisplacement() {
+        return meanDisplacement;
+    }
+
+    /**
+     * Deletes mapped files of the last run
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (subdivisionPoints != null)
+            subdivisionPoints.close();
+        subdivisionPoints = null;
+    }
+
+    @Override
+    public void registerObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void notifyObservers(int iteration, int cycle, boolean finished) {
+        for (Observer observer : observers) {
+            if (finished)
+                observer.finished(nodes, edges);
+            else
+                observer.updateProcessInfo(iteration, cycle);
+        }
+    }
+}
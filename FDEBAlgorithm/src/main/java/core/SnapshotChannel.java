@@ -0,0 +1,91 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Channel publishing intermediate subdivision points of a running algorithm, at most at given frame rate.
+ *
+ * The algorithm offers its points after each iteration; if the frame interval has elapsed, the points are copied
+ * into a {@link PolylineSnapshot} and replace the pending one. The listener is called only when there was no pending
+ * snapshot, so a consumer slower than the frame rate is notified once and then takes just the latest snapshot,
+ * the others are dropped. Consumed snapshots may be returned by {@link #recycle(PolylineSnapshot)}, so that
+ * the channel alternates between two buffers instead of allocating new ones. Publishing never blocks.
+ */
+public class SnapshotChannel {
+
+    /**
+     * Notified when a snapshot becomes pending, on the thread of the algorithm
+     */
+    public interface Listener {
+
+        void snapshotAvailable(SnapshotChannel channel);
+    }
+
+    private final long intervalNanos;
+    private final Listener listener;
+
+    private final AtomicReference<PolylineSnapshot> pending = new AtomicReference<>();
+    private final AtomicReference<PolylineSnapshot> recycled = new AtomicReference<>();
+    private long lastPublished;
+    private boolean published;
+
+    /**
+     * @param framesPerSecond maximal number of published snapshots per second
+     * @param listener
+     */
+    public SnapshotChannel(double framesPerSecond, Listener listener) {
+        if (!(framesPerSecond > 0))
+            throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        this.intervalNanos = (long) (1e9 / framesPerSecond);
+        this.listener = listener;
+    }
+
+    /**
+     * Returns whether the frame interval has elapsed since the last snapshot, so that {@link #offer} would publish
+     * one. The algorithm checks it before preparing its points for the snapshot.
+     *
+     * @return
+     */
+    boolean isDue() {
+        return !published || System.nanoTime() - lastPublished >= intervalNanos;
+    }
+
+    /**
+     * Publishes copy of given points, unless the last snapshot was published less than the frame interval ago.
+     * Called by the algorithm only.
+     *
+     * @param subdivisionPoints
+     * @param iteration
+     * @param cycle
+     */
+    void offer(SubdivisionBuffer subdivisionPoints, int iteration, int cycle) {
+        final long now = System.nanoTime();
+        if (published && now - lastPublished < intervalNanos)
+            return;
+        published = true;
+        lastPublished = now;
+
+        PolylineSnapshot snapshot = PolylineSnapshot.copyOf(subdivisionPoints, iteration, cycle,
+                recycled.getAndSet(null));
+        if (pending.getAndSet(snapshot) == null)
+            listener.snapshotAvailable(this);
+    }
+
+    /**
+     * Takes the latest pending snapshot
+     *
+     * @return snapshot or {@code null} if there is none
+     */
+    public PolylineSnapshot take() {
+        return pending.getAndSet(null);
+    }
+
+    /**
+     * Returns snapshot which is no longer used, to be reused for one of the next snapshots
+     *
+     * @param snapshot
+     */
+    public void recycle(PolylineSnapshot snapshot) {
+        recycled.set(snapshot);
+    }
+}
@@ -0,0 +1,290 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flat storage of subdivision points of all edges.
+ *
+ * Points of edge {@code e} occupy indices {@code offsets[e]} to {@code offsets[e + 1] - 1} of the {@code x} and
+ * {@code y} arrays, the first one being start-point and the last one end-point of the edge. Resampling of a curved
+ * edge may produce one point more than requested, therefore each edge keeps its own offset.
+ *
+ * Besides the current positions the buffer holds a second pair of arrays, into which new positions are written
+ * during an iteration, so that positions can be read and written concurrently. {@link #swap()} then makes the new
+ * positions current. Points that are never written (endpoints) have equal values in both pairs of arrays.
+ */
+public class SubdivisionBuffer {
+
+    private double[] x;
+    private double[] y;
+    private double[] nextX;
+    private double[] nextY;
+    private final int[] offsets;
+    private final int subdivisionPointsCount;
+
+    SubdivisionBuffer(double[] x, double[] y, int[] offsets, int subdivisionPointsCount) {
+        this.x = x;
+        this.y = y;
+        this.offsets = offsets;
+        this.subdivisionPointsCount = subdivisionPointsCount;
+        this.nextX = x.clone();
+        this.nextY = y.clone();
+    }
+
+    /**
+     * Creates buffer in which each edge is divided only by its midpoint.
+     *
+     * @param edges edges of the graph
+     */
+    public SubdivisionBuffer(Edge[] edges) {
+        this(new double[edges.length * 3], new double[edges.length * 3], new int[edges.length + 1], 1);
+
+        for (int i = 0; i < edges.length; i++) {
+            int offset = 3 * i;
+            x[offset] = edges[i].getFrom().getPosition().getX();
+            y[offset] = edges[i].getFrom().getPosition().getY();
+            x[offset + 1] = (edges[i].getFrom().getPosition().getX() + edges[i].getTo().getPosition().getX()) / 2.0;
+            y[offset + 1] = (edges[i].getFrom().getPosition().getY() + edges[i].getTo().getPosition().getY()) / 2.0;
+            x[offset + 2] = edges[i].getTo().getPosition().getX();
+            y[offset + 2] = edges[i].getTo().getPosition().getY();
+            offsets[i + 1] = offset + 3;
+        }
+        System.arraycopy(x, 0, nextX, 0, x.length);
+        System.arraycopy(y, 0, nextY, 0, y.length);
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    /**
+     * Returns array into which new x positions of the current iteration are written
+     * @return
+     */
+    public double[] getNextX() {
+        return nextX;
+    }
+
+    /**
+     * Returns array into which new y positions of the current iteration are written
+     * @return
+     */
+    public double[] getNextY() {
+        return nextY;
+    }
+
+    /**
+     * Makes positions written into {@link #getNextX()} and {@link #getNextY()} current.
+     */
+    public void swap() {
+        double[] tmp = x;
+        x = nextX;
+        nextX = tmp;
+        tmp = y;
+        y = nextY;
+        nextY = tmp;
+    }
+
+    public int getEdgesCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns requested number of subdivision points per edge, i.e. number of points moved by forces
+     * @return
+     */
+    public int getSubdivisionPointsCount() {
+        return subdivisionPointsCount;
+    }
+
+    /**
+     * Returns index of start-point of given edge
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getOffset(int edgeID) {
+        return offsets[edgeID];
+    }
+
+    /**
+     * Returns number of stored points of given edge, including both of its endpoints
+     *
+     * @param edgeID
+     * @return
+     */
+    public int getPointsCount(int edgeID) {
+        return offsets[edgeID + 1] - offsets[edgeID];
+    }
+
+    /**
+     * Returns total number of stored points
+     * @return
+     */
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Returns number of bytes of heap used by the buffer, i.e. by current and next positions and offsets
+     * @return
+     */
+    long getHeapBytes() {
+        return 32L * x.length + 4L * offsets.length;
+    }
+
+    /**
+     * Returns the length of given edge which is already curved based on its subdivision points
+     *
+     * @param edgeID
+     * @return
+     */
+    public double getCurvedLength(int edgeID) {
+        return getCurvedLength(x, y, offsets[edgeID], offsets[edgeID + 1]);
+    }
+
+    /**
+     * Returns the length of polyline given by points {@code from} to {@code to - 1}
+     *
+     * @param x
+     * @param y
+     * @param from
+     * @param to
+     * @return
+     */
+    static double getCurvedLength(double[] x, double[] y, int from, int to) {
+        double length = 0;
+
+        for (int i = from + 1; i < to; i++) {
+            double dx = x[i] - x[i - 1];
+            double dy = y[i] - y[i - 1];
+            length += Math.sqrt(dx * dx + dy * dy);
+        }
+        return length;
+    }
+
+    /**
+     * Calculates new buffer with {@code newSubdivisionPointsCount} subdivision points for each edge, placed evenly
+     * along the curve given by subdivision points of this buffer.
+     *
+     * @param newSubdivisionPointsCount
+     * @return
+     */
+    public SubdivisionBuffer resample(int newSubdivisionPointsCount) {
+        final int edgesCount = getEdgesCount();
+        Resampler resampler = new Resampler(edgesCount * (newSubdivisionPointsCount + 3));
+        int[] newOffsets = new int[edgesCount + 1];
+
+        for (int edgeID = 0; edgeID < edgesCount; edgeID++) {
+            resampler.add(x, y, offsets[edgeID], offsets[edgeID + 1], newSubdivisionPointsCount);
+            newOffsets[edgeID + 1] = resampler.size;
+        }
+
+        return new SubdivisionBuffer(Arrays.copyOf(resampler.x, resampler.size),
+                Arrays.copyOf(resampler.y, resampler.size), newOffsets, newSubdivisionPointsCount);
+    }
+
+    /**
+     * Places subdivision points evenly along polylines and appends them to growing arrays
+     */
+    static class Resampler {
+
+        double[] x;
+        double[] y;
+        int size;
+
+        Resampler(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+        }
+
+        /**
+         * Appends start-point, {@code newSubdivisionPointsCount} (rarely one more) points placed evenly along
+         * polyline given by points {@code from} to {@code to - 1} of {@code pointsX} and {@code pointsY}, and
+         * end-point
+         *
+         * @param pointsX
+         * @param pointsY
+         * @param from
+         * @param to
+         * @param newSubdivisionPointsCount
+         */
+        void add(double[] pointsX, double[] pointsY, int from, int to, int newSubdivisionPointsCount) {
+            if (size + newSubdivisionPointsCount + 3 > x.length) {
+                int capacity = Math.max(2 * x.length, size + newSubdivisionPointsCount + 3);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+            }
+
+            x[size] = pointsX[from];
+            y[size] = pointsY[from];
+            size++;
+
+            // get length of segment in current iteration
+            final double segmentLength = getCurvedLength(pointsX, pointsY, from, to) / (newSubdivisionPointsCount + 1);
+            double currSegmentLength = segmentLength;
+
+            for (int j = from + 1; j < to; j++) {
+
+                // get length of segment in previous iteration
+                double dx = pointsX[j] - pointsX[j - 1];
+                double dy = pointsY[j] - pointsY[j - 1];
+                double oldSegmentLength = Math.sqrt(dx * dx + dy * dy);
+
+                while (oldSegmentLength > currSegmentLength) {
+
+                    // calculate fraction of segment lengths between current and previous iteration
+                    double percentage = currSegmentLength / oldSegmentLength;
+
+                    if (size + 2 > x.length) {
+                        x = Arrays.copyOf(x, 2 * x.length);
+                        y = Arrays.copyOf(y, 2 * y.length);
+                    }
+                    x[size] = pointsX[j - 1] + percentage * (pointsX[j] - pointsX[j - 1]);
+                    y[size] = pointsY[j - 1] + percentage * (pointsY[j] - pointsY[j - 1]);
+                    size++;
+
+                    oldSegmentLength -= currSegmentLength;
+                    currSegmentLength = segmentLength;
+                }
+
+                currSegmentLength -= oldSegmentLength;
+            }
+
+            x[size] = pointsX[to - 1];
+            y[size] = pointsY[to - 1];
+            size++;
+        }
+    }
+
+    /**
+     * Stores subdivision points of this buffer into given edges as lists of nodes.
+     * Endpoints of each edge are represented by its original {@code from} and {@code to} nodes.
+     *
+     * @param edges edges this buffer was created from
+     */
+    public void toEdges(Edge[] edges) {
+        for (int edgeID = 0; edgeID < edges.length; edgeID++) {
+            final int from = offsets[edgeID];
+            final int to = offsets[edgeID + 1];
+
+            List<Node> subdivisionPoints = new ArrayList<>(to - from);
+            subdivisionPoints.add(edges[edgeID].getFrom());
+            for (int i = from + 1; i < to - 1; i++) {
+                subdivisionPoints.add(new Node(x[i], y[i]));
+            }
+            subdivisionPoints.add(edges[edgeID].getTo());
+
+            edges[edgeID].setSubdivisionPoints(subdivisionPoints);
+        }
+    }
+}
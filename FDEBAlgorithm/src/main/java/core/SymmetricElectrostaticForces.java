@@ -0,0 +1,230 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Electrostatic forces evaluated once per pair of corresponding subdivision points of compatible edges.
+ * Force applied on p by q is the opposite of force applied on q by p:
+ * (q - p) / ||q - p|| = -((p - q) / ||p - q||)
+ * and floating-point subtraction, square root and division are symmetric in this sense, so the force is calculated
+ * for the pair in the direction from the edge with lower ID and negated for the other edge.
+ *
+ * Forces applied on each point are summed in the order of its compatible edges and pairs ignored because of
+ * {@link ElectrostaticKernel#EPS} are skipped, so the sums are the same as of {@link ScalarElectrostaticKernel}:
+ * - {@link #scatterForces} (single thread) walks edges in ascending order and adds force of each pair to both
+ *   points, therefore each point receives forces of its compatible edges in ascending order as well
+ * - {@link #calculatePairForces} and {@link #gatherForces} (pool) first store forces of pairs of a block of
+ *   points into a buffer, each thread for pairs of its own edges, then each thread sums forces on points of its
+ *   own edges from the buffer; no two threads write the same element, so no synchronization is needed.
+ *   Ignored pairs are stored as zero force, which leaves the sums unchanged.
+ */
+class SymmetricElectrostaticForces {
+
+    // maximal number of buffered pair forces in each axis
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final int[] offsets;
+    private final int[] neighbours;
+    // index of the reversed pair in neighbours, for each pair
+    private final int[] mirrors;
+
+    // electrostatic force on each subdivision point, indexed as points of SubdivisionBuffer
+    private double[] forcesX = new double[0];
+    private double[] forcesY = new double[0];
+
+    // forces of pairs of the current block, of point i of pair k at k * blockSize + i - fromPoint
+    private double[] pairForcesX = new double[0];
+    private double[] pairForcesY = new double[0];
+    private int fromPoint;
+    private int blockSize;
+
+    /**
+     * @param compatibilityGraph compatible edges, stored in both directions in ascending order
+     */
+    SymmetricElectrostaticForces(CompatibilityGraph compatibilityGraph) {
+        offsets = compatibilityGraph.getOffsets();
+        neighbours = compatibilityGraph.getNeighbours();
+        mirrors = new int[neighbours.length];
+
+        // reversed pairs (q, p) with q > p appear in the list of q in ascending order of p
+        final int edgesCount = compatibilityGraph.getEdgesCount();
+        int[] cursors = new int[edgesCount];
+        System.arraycopy(offsets, 0, cursors, 0, edgesCount);
+        for (int p = 0; p < edgesCount; p++) {
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                final int q = neighbours[k];
+                if(q > p) {
+                    mirrors[k] = cursors[q];
+                    mirrors[cursors[q]++] = k;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears forces on points before an iteration
+     *
+     * @param pointsCount total number of subdivision points
+     */
+    void reset(int pointsCount) {
+        if(forcesX.length != pointsCount) {
+            forcesX = new double[pointsCount];
+            forcesY = new double[pointsCount];
+        } else {
+            Arrays.fill(forcesX, 0);
+            Arrays.fill(forcesY, 0);
+        }
+    }
+
+    double[] getForcesX() {
+        return forcesX;
+    }
+
+    double[] getForcesY() {
+        return forcesY;
+    }
+
+    /**
+     * Calculates forces on all points, adding force of each pair to both of its points. Pairs of two frozen edges
+     * are skipped. Not thread-safe.
+     *
+     * @param subdivisionPoints
+     * @param pointOffsets offsets of first subdivision points of compatible edges, indexed as neighbours
+     * @param frozen
+     * @param subdivisionPointsCount
+     */
+    void scatterForces(SubdivisionBuffer subdivisionPoints, int[] pointOffsets, boolean[] frozen,
+                       int subdivisionPointsCount) {
+        final double[] x = subdivisionPoints.getX();
+        final double[] y = subdivisionPoints.getY();
+        final double eps = ElectrostaticKernel.EPS;
+
+        for (int p = 0; p < offsets.length - 1; p++) {
+            final int offset = subdivisionPoints.getOffset(p);
+
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                final int q = neighbours[k];
+                if(q < p || frozen[p] && frozen[q])
+                    continue;
+
+                final int compatibleOffset = pointOffsets[k];
+                for (int i = 1; i < subdivisionPointsCount + 1; i++) {
+                    double forceX = x[compatibleOffset + i] - x[offset + i];
+                    double forceY = y[compatibleOffset + i] - y[offset + i];
+
+                    if(Math.abs(forceX) < eps || Math.abs(forceY) < eps)
+                        continue;
+
+                    double divisor = Math.sqrt(forceX * forceX + forceY * forceY);
+                    forceX /= divisor;
+                    forceY /= divisor;
+
+                    forcesX[offset + i] += forceX;
+                    forcesY[offset + i] += forceY;
+                    forcesX[compatibleOffset + i] -= forceX;
+                    forcesY[compatibleOffset + i] -= forceY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns number of subdivision points whose pair forces fit into the buffer at once
+     *
+     * @param subdivisionPointsCount
+     * @return
+     */
+    int getBlockSize(int subdivisionPointsCount) {
+        return Math.max(1, Math.min(subdivisionPointsCount, BUFFER_SIZE / Math.max(1, neighbours.length)));
+    }
+
+    /**
+     * Sets block of subdivision points [{@code fromPoint}, {@code toPoint}) processed by next calls of
+     * {@link #calculatePairForces} and {@link #gatherForces}
+     *
+     * @param fromPoint
+     * @param toPoint
+     */
+    void setBlock(int fromPoint, int toPoint) {
+        this.fromPoint = fromPoint;
+        this.blockSize = toPoint - fromPoint;
+        if(pairForcesX.length < neighbours.length * blockSize) {
+            pairForcesX = new double[neighbours.length * blockSize];
+            pairForcesY = new double[neighbours.length * blockSize];
+        }
+    }
+
+    /**
+     * Calculates forces of pairs of subdivision points of the current block, for pairs of edges whose lower ID is in
+     * range [{@code fromEdgeID}, {@code toEdgeID}). Pairs of two frozen edges are skipped.
+     *
+     * @param subdivisionPoints
+     * @param pointOffsets offsets of first subdivision points of compatible edges, indexed as neighbours
+     * @param frozen
+     * @param fromEdgeID
+     * @param toEdgeID
+     */
+    void calculatePairForces(SubdivisionBuffer subdivisionPoints, int[] pointOffsets, boolean[] frozen,
+                             int fromEdgeID, int toEdgeID) {
+        final double[] x = subdivisionPoints.getX();
+        final double[] y = subdivisionPoints.getY();
+        final double eps = ElectrostaticKernel.EPS;
+
+        for (int p = fromEdgeID; p < toEdgeID; p++) {
+            final int offset = subdivisionPoints.getOffset(p);
+
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                final int q = neighbours[k];
+                if(q < p || frozen[p] && frozen[q])
+                    continue;
+
+                final int pair = k * blockSize - fromPoint;
+                final int mirror = mirrors[k] * blockSize - fromPoint;
+                for (int i = fromPoint; i < fromPoint + blockSize; i++) {
+                    double forceX = x[pointOffsets[k] + i] - x[offset + i];
+                    double forceY = y[pointOffsets[k] + i] - y[offset + i];
+
+                    if(Math.abs(forceX) < eps || Math.abs(forceY) < eps) {
+                        pairForcesX[pair + i] = 0;
+                        pairForcesY[pair + i] = 0;
+                        pairForcesX[mirror + i] = 0;
+                        pairForcesY[mirror + i] = 0;
+                        continue;
+                    }
+
+                    double divisor = Math.sqrt(forceX * forceX + forceY * forceY);
+
+                    pairForcesX[pair + i] = forceX / divisor;
+                    pairForcesY[pair + i] = forceY / divisor;
+                    pairForcesX[mirror + i] = -pairForcesX[pair + i];
+                    pairForcesY[mirror + i] = -pairForcesY[pair + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums forces of pairs of the current block into forces on subdivision points of edges in range
+     * [{@code fromEdgeID}, {@code toEdgeID}), except frozen edges
+     *
+     * @param subdivisionPoints
+     * @param frozen
+     * @param fromEdgeID
+     * @param toEdgeID
+     */
+    void gatherForces(SubdivisionBuffer subdivisionPoints, boolean[] frozen, int fromEdgeID, int toEdgeID) {
+        for (int p = fromEdgeID; p < toEdgeID; p++) {
+            if(frozen[p])
+                continue;
+
+            final int offset = subdivisionPoints.getOffset(p) + fromPoint;
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                final int pair = k * blockSize;
+                for (int j = 0; j < blockSize; j++) {
+                    forcesX[offset + j] += pairForcesX[pair + j];
+                    forcesY[offset + j] += pairForcesY[pair + j];
+                }
+            }
+        }
+    }
+}
@@ -1,26 +1,35 @@
 package main;
 
+import core.BundlingCache;
+import core.Configuration;
 import core.ForceDirectedEdgeBundling;
 import core.IOParser;
 import model.Node;
 import model.Edge;
 import java.io.*;
+import java.nio.file.Paths;
 
 public class Main {
 
 
     public static void main(String[] args) throws IOException {
 
-        IOParser parser = new IOParser("src/main/resources/airlines.graphml");
+        IOParser parser = new IOParser("src/main/resources/airlines.graphml", true);
 
         Node[] nodes = parser.getNodes();
         Edge[] edges = parser.getEdges();
 
-        ForceDirectedEdgeBundling fdeb = new ForceDirectedEdgeBundling(nodes, edges);
+        ForceDirectedEdgeBundling fdeb = new ForceDirectedEdgeBundling(nodes, edges)
+                .setParallelism(Configuration.DEFAULT_PARALLELISM)
+                .setCache(new BundlingCache(Paths.get(Configuration.DEFAULT_CACHE_DIRECTORY),
+                        Configuration.DEFAULT_CACHE_SIZE));
         fdeb.run();
 
 //        parser.printBundledEdges(edges);
 //        parser.printToJson(edges);
+//        parser.printToBinary("src/main/resources/results.fdeb", fdeb.getSubdivisionPoints());
+//        parser.createExporter(ResultExporter.Format.GEOJSON).setGzip(true)
+//                .export(Paths.get("src/main/resources/results.geojson.gz"), edges, fdeb.getSubdivisionPoints());
     }
 
 }
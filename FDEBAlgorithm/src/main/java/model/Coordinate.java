@@ -40,7 +40,9 @@ public class Coordinate {
      * @return
      */
     public double euclideanDistance(Coordinate other){
-        return Math.sqrt(Math.pow(this.x - other.getX(), 2) + Math.pow(this.y- other.getY(), 2));
+        final double dx = this.x - other.getX();
+        final double dy = this.y - other.getY();
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     @Override
@@ -159,7 +159,7 @@ public class Edge {
      * @param other
      * @return
      */
-    private double edgeCompatibilityScore(Edge other){
+    public double edgeCompatibilityScore(Edge other){
         return this.angleCompatibility(other) * this.scaleCompatibility(other) *  this.positionCompatibility(other)*  this.visibilityCompatibility(other);
     }
 
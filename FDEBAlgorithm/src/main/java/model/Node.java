@@ -61,10 +61,11 @@ public class Node {
 
     public Node projectPointOnLine(Edge other){
         Coordinate otherVector = other.vector();
+        double length = other.getLength();
 
         double r = ((other.getFrom().getPosition().getY() - this.position.getY()) * (-otherVector.getY()) -
                     (other.getFrom().getPosition().getX() - this.position.getX()) * (otherVector.getX())) /
-                    (Math.pow(other.getLength(), 2));
+                    (length * length);
 
 
         return new Node(other.getFrom().getPosition().getX() + r * (otherVector.getX()),
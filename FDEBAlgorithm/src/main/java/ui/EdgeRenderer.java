@@ -0,0 +1,254 @@
+package ui;
+
+import core.PolylineSnapshot;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import model.Edge;
+import model.Node;
+
+import java.util.List;
+
+/**
+ * Draws nodes and bundled edges onto a canvas directly from primitive buffers.
+ *
+ * Each edge is drawn as straight segments between subdivision points p_0 - p_1, p_2 - p_3, ..., joined by cubic
+ * curves p_1 ~ p_2, p_3 ~ p_4, ... whose control points extend the adjacent segments by their average length:
+ * c_1 = p_1 + (p_1 - p_0) * l_avg / ||p_1 - p_0||, c_2 = p_2 - (p_3 - p_2) * l_avg / ||p_3 - p_2||
+ * Control points and {@link SegmentIndex} are calculated once, when points are set. Buffers only grow, so drawing
+ * and setting points of results of the same size allocate nothing.
+ */
+class EdgeRenderer {
+
+    private static final Color NODE_COLOR = Color.BLUE;
+    private static final Color EDGE_COLOR = Color.rgb(0, 0, 230, 0.1);
+    private static final double EDGE_WIDTH = 0.7;
+    private static final double NODE_RADIUS = 3;
+    private static final double NODE_SIZE = 7;
+    // shortest drawn segment in pixels, shorter segments are merged
+    private static final double MIN_SEGMENT_LENGTH = 4;
+    private static final int MAX_STRIDE = 64;
+
+    private int nodesCount;
+    private double[] nodeX = new double[0];
+    private double[] nodeY = new double[0];
+
+    private int edgesCount;
+    private int[] offsets = new int[1];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    // control points of the curve ending at each point, NaN if the point is reached by a straight segment
+    private double[] control1X = new double[0];
+    private double[] control1Y = new double[0];
+    private double[] control2X = new double[0];
+    private double[] control2Y = new double[0];
+    private double averageSegmentLength;
+
+    private final SegmentIndex index = new SegmentIndex();
+
+    void setNodes(Node[] nodes) {
+        nodesCount = nodes.length;
+        if (nodeX.length < nodesCount) {
+            nodeX = new double[nodesCount];
+            nodeY = new double[nodesCount];
+        }
+        for (int i = 0; i < nodesCount; i++) {
+            nodeX[i] = nodes[i].getPosition().getX();
+            nodeY[i] = nodes[i].getPosition().getY();
+        }
+    }
+
+    /**
+     * Sets subdivision points of edges from given snapshot, the snapshot is not referenced afterwards
+     *
+     * @param snapshot
+     */
+    void setEdges(PolylineSnapshot snapshot) {
+        final int count = snapshot.getEdgesCount();
+        final int size = snapshot.getOffset(count);
+        ensureCapacity(count, size);
+
+        edgesCount = count;
+        for (int i = 0; i <= count; i++) {
+            offsets[i] = snapshot.getOffset(i);
+        }
+        System.arraycopy(snapshot.getX(), 0, x, 0, size);
+        System.arraycopy(snapshot.getY(), 0, y, 0, size);
+        calculateControlPoints();
+        index.build(x, y, offsets, edgesCount);
+    }
+
+    /**
+     * Sets subdivision points of given edges
+     *
+     * @param edges
+     */
+    void setEdges(Edge[] edges) {
+        int size = 0;
+        for (Edge edge : edges) {
+            size += edge.getSubdivisionPoints().size();
+        }
+        ensureCapacity(edges.length, size);
+
+        edgesCount = edges.length;
+        int p = 0;
+        for (int i = 0; i < edges.length; i++) {
+            offsets[i] = p;
+            List<Node> points = edges[i].getSubdivisionPoints();
+            for (int j = 0; j < points.size(); j++, p++) {
+                x[p] = points.get(j).getPosition().getX();
+                y[p] = points.get(j).getPosition().getY();
+            }
+        }
+        offsets[edges.length] = p;
+        calculateControlPoints();
+        index.build(x, y, offsets, edgesCount);
+    }
+
+    private void ensureCapacity(int edgesCount, int size) {
+        if (offsets.length < edgesCount + 1)
+            offsets = new int[edgesCount + 1];
+        if (x.length < size) {
+            x = new double[size];
+            y = new double[size];
+            control1X = new double[size];
+            control1Y = new double[size];
+            control2X = new double[size];
+            control2Y = new double[size];
+        }
+    }
+
+    private void calculateControlPoints() {
+        double totalLength = 0;
+        for (int i = 0; i < edgesCount; i++) {
+            final int from = offsets[i];
+            final int to = offsets[i + 1];
+
+            for (int p = from; p < to; p++) {
+                control1X[p] = Double.NaN;
+                if (p > from)
+                    totalLength += Math.sqrt((x[p] - x[p - 1]) * (x[p] - x[p - 1])
+                            + (y[p] - y[p - 1]) * (y[p] - y[p - 1]));
+
+                // curve p - 1 ~ p joins segments (p - 2, p - 1) and (p, p + 1), p - from being even
+                if (p - from < 2 || (p - from) % 2 != 0 || p + 1 >= to)
+                    continue;
+
+                final double lastLength = Math.sqrt((x[p - 1] - x[p - 2]) * (x[p - 1] - x[p - 2])
+                        + (y[p - 1] - y[p - 2]) * (y[p - 1] - y[p - 2]));
+                final double length = Math.sqrt((x[p + 1] - x[p]) * (x[p + 1] - x[p])
+                        + (y[p + 1] - y[p]) * (y[p + 1] - y[p]));
+                if (lastLength == 0 || length == 0)
+                    continue;
+                final double aveLength = (lastLength + length) / 2;
+
+                control1X[p] = x[p - 1] + (x[p - 1] - x[p - 2]) * aveLength / lastLength;
+                control1Y[p] = y[p - 1] + (y[p - 1] - y[p - 2]) * aveLength / lastLength;
+                control2X[p] = x[p] - (x[p + 1] - x[p]) * aveLength / length;
+                control2Y[p] = y[p] - (y[p + 1] - y[p]) * aveLength / length;
+            }
+        }
+        averageSegmentLength = totalLength / Math.max(1, offsets[edgesCount] - edgesCount);
+    }
+
+    /**
+     * Clears given canvas and draws nodes and edges visible in it, canvas point (0, 0) showing graph point
+     * ({@code originX}, {@code originY}). Only edges found by the segment index are drawn. Nodes and line width
+     * keep their size in pixels at all scales, edges whose segments would be shorter than MIN_SEGMENT_LENGTH pixels
+     * are drawn through every {@code stride}-th point only, see {@link #getStride(double)}.
+     *
+     * @param gc
+     * @param originX
+     * @param originY
+     * @param scale
+     * @param width width of the canvas
+     * @param height height of the canvas
+     */
+    void draw(GraphicsContext gc, double originX, double originY, double scale, double width, double height) {
+        gc.clearRect(0, 0, width, height);
+
+        final double toX = originX + width / scale;
+        final double toY = originY + height / scale;
+        final double nodeMargin = NODE_SIZE / scale;
+        gc.setFill(NODE_COLOR);
+        for (int i = 0; i < nodesCount; i++) {
+            if (nodeX[i] < originX - nodeMargin || nodeX[i] > toX + nodeMargin
+                    || nodeY[i] < originY - nodeMargin || nodeY[i] > toY + nodeMargin)
+                continue;
+            gc.fillOval((nodeX[i] - originX) * scale - NODE_RADIUS, (nodeY[i] - originY) * scale - NODE_RADIUS,
+                    NODE_SIZE, NODE_SIZE);
+        }
+
+        final double edgeMargin = EDGE_WIDTH / scale;
+        final int count = index.query(originX - edgeMargin, originY - edgeMargin, toX + edgeMargin, toY + edgeMargin);
+        final int[] visibleEdges = index.getResult();
+        final int stride = getStride(scale);
+
+        gc.save();
+        gc.setTransform(scale, 0, 0, scale, -originX * scale, -originY * scale);
+        gc.setStroke(EDGE_COLOR);
+        gc.setLineWidth(EDGE_WIDTH / scale);
+        for (int i = 0; i < count; i++) {
+            if (stride == 1)
+                drawEdge(gc, visibleEdges[i]);
+            else
+                drawEdge(gc, visibleEdges[i], stride);
+        }
+        gc.restore();
+    }
+
+    /**
+     * Returns the largest power of two {@code stride} such that stride * l_avg * scale <= MIN_SEGMENT_LENGTH, where
+     * l_avg is the average length of segments, but at least 1
+     *
+     * @param scale
+     * @return
+     */
+    int getStride(double scale) {
+        int stride = 1;
+        while (stride < MAX_STRIDE && 2 * stride * averageSegmentLength * scale <= MIN_SEGMENT_LENGTH) {
+            stride *= 2;
+        }
+        return stride;
+    }
+
+    private void drawEdge(GraphicsContext gc, int edgeID) {
+        final int from = offsets[edgeID];
+        final int to = offsets[edgeID + 1];
+        if (to - from < 2)
+            return;
+
+        // each edge is stroked separately, so that overlapping edges of a bundle add up
+        gc.beginPath();
+        gc.moveTo(x[from], y[from]);
+        for (int p = from + 1; p < to; p++) {
+            if (Double.isNaN(control1X[p]))
+                gc.lineTo(x[p], y[p]);
+            else
+                gc.bezierCurveTo(control1X[p], control1Y[p], control2X[p], control2Y[p], x[p], y[p]);
+        }
+        gc.stroke();
+    }
+
+    /**
+     * Draws edge as straight segments through every {@code stride}-th point and its end-point, curves would not be
+     * visible at scales where this is used
+     *
+     * @param gc
+     * @param edgeID
+     * @param stride
+     */
+    private void drawEdge(GraphicsContext gc, int edgeID, int stride) {
+        final int from = offsets[edgeID];
+        final int to = offsets[edgeID + 1];
+        if (to - from < 2)
+            return;
+
+        gc.beginPath();
+        gc.moveTo(x[from], y[from]);
+        for (int p = from + stride; p < to - 1; p += stride) {
+            gc.lineTo(x[p], y[p]);
+        }
+        gc.lineTo(x[to - 1], y[to - 1]);
+        gc.stroke();
+    }
+}
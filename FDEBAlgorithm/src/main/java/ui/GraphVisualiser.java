@@ -1,44 +1,51 @@
 package ui;
 
+import core.BundlingCache;
+import core.BundlingExecutor;
+import core.BundlingJob;
 import core.Configuration;
 import javafx.application.Platform;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.*;
 
-import javafx.scene.transform.Scale;
 import model.Edge;
 import model.Node;
 import core.IOParser;
+import core.PolylineSnapshot;
+import core.SnapshotChannel;
 import core.Observer;
 import core.ForceDirectedEdgeBundling;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.commons.lang.math.NumberUtils.isNumber;
 
-public class GraphVisualiser implements Initializable, Observer {
+public class GraphVisualiser implements Initializable {
 
     @FXML
     private BorderPane borderPane;
     @FXML
     private Button visualiseButton;
+    @FXML
+    private Button cancelButton;
 
     @FXML
     private Canvas canvas;
@@ -55,45 +62,60 @@ public class GraphVisualiser implements Initializable, Observer {
 
     // Ovechkin constant for positioning graph
     private final int OK2 = 50;
+    // maximal number of cached tiles, about 64 MB
+    private final int TILE_CACHE_CAPACITY = 256;
+
+    // results of previous runs, shared by all runs
+    private final BundlingCache cache = new BundlingCache(Paths.get(Configuration.DEFAULT_CACHE_DIRECTORY),
+            Configuration.DEFAULT_CACHE_SIZE);
+
+    // runs bundling, a run with other parameters pre-empts the running one
+    private final BundlingExecutor executor = new BundlingExecutor();
+    private BundlingJob job;
 
     private final ButtonType continueAnyway = new ButtonType("Continue anyway", ButtonBar.ButtonData.OK_DONE);
 
-    private List<TextField> textFields;
+    // draws nodes and edges of the current result or snapshot
+    private final EdgeRenderer renderer = new EdgeRenderer();
+    // tiles of the final result
+    private final TileCache tiles = new TileCache(renderer, TILE_CACHE_CAPACITY);
+    // visible part of the graph
+    private final Viewport viewport = new Viewport(-OK2, 0);
+    // intermediate subdivision points of the running algorithm, identifies the run
+    private SnapshotChannel snapshotChannel;
 
-    // current value of canvas scale X, used to prevent zooming too far
-    private double canvasScaleX;
-    // current value of canvas scale Y, used to prevent zooming too far
-    private double canvasScaleY;
+    // last position of mouse while panning
+    private double panX;
+    private double panY;
 
     //TODO Long,lat na x a y
 
 
     private void handleMouseScrolling(Canvas node) {
-        final double SCALE_DELTA = 1.1;
-
         node.setOnScroll((ScrollEvent event) -> {
             event.consume();
             if(event.getDeltaY() == 0)
                 return;
 
-            // prevent zooming too far away
-            if((canvasScaleX < 0.5 || canvasScaleY < 0.5) && event.getDeltaY() < 0){
-                return;
-            }
-
-            double scaleFactor = event.getDeltaY() > 0 ? SCALE_DELTA : 1/SCALE_DELTA;
+            if(viewport.zoom(event.getDeltaY() > 0 ? 1 : -1, event.getX(), event.getY()))
+                redraw();
+        });
+    }
 
-            Scale scale = new Scale();
-            scale.setPivotX(event.getX());
-            scale.setPivotY(event.getY());
-            scale.setX(canvas.getScaleX() * scaleFactor);
-            scale.setY(canvas.getScaleY() * scaleFactor);
-            canvasScaleX = canvasScaleX * scaleFactor;
-            canvasScaleY = canvasScaleX * scaleFactor;
+    private void handleMouseDragging(Canvas node) {
+        node.setOnMousePressed((MouseEvent event) -> {
+            panX = event.getX();
+            panY = event.getY();
+        });
 
-            node.getTransforms().add(scale);
-            event.consume();
+        node.setOnMouseDragged((MouseEvent event) -> {
+            if(event.getButton() != MouseButton.PRIMARY)
+                return;
 
+            viewport.pan(event.getX() - panX, event.getY() - panY);
+            panX = event.getX();
+            panY = event.getY();
+            redraw();
         });
     }
 
@@ -151,21 +173,34 @@ public class GraphVisualiser implements Initializable, Observer {
         iterationsCountTextField.setText(String.valueOf(inputIterationsCount));
         cyclesCountTextField.setText(String.valueOf(inputCyclesCount));
 
-        IOParser IOParser = new IOParser("src/main/resources/airlines.graphml");
+        IOParser IOParser = new IOParser("src/main/resources/airlines.graphml", true);
 //        IOParser IOParser = new IOParser("src/main/resources/migrations.xml");
 
         Node[] nodes = IOParser.getNodes();
         Edge[] edges = IOParser.getEdges();
 
         ForceDirectedEdgeBundling fdeb = new ForceDirectedEdgeBundling(nodes, edges, inputStepSize, inputCompatibility, inputEdgeStiffness,inputIterationsCount, inputCyclesCount);
-        fdeb.registerObserver(this);
+        SnapshotChannel channel = new SnapshotChannel(Configuration.DEFAULT_SNAPSHOT_RATE,
+                c -> Platform.runLater(() -> drawSnapshot(c)));
 
-        new Thread(fdeb::run).start();
-        visualiseButton.setDisable(true);
+        fdeb.setParallelism(Configuration.DEFAULT_PARALLELISM).setCache(cache).setSnapshotChannel(channel);
+        fdeb.registerObserver(new RunObserver(channel));
 
-        for(TextField field : textFields){
-            field.setDisable(true);
-        }
+        BundlingJob submitted = executor.submit(fdeb, Configuration.DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        // the running job has the same parameters, keep it
+        if(submitted == job)
+            return;
+
+        job = submitted;
+        snapshotChannel = channel;
+        renderer.setNodes(nodes);
+        cancelButton.setDisable(false);
+    }
+
+    @FXML
+    private void handleCancelButtonAction(ActionEvent event) {
+        if(job != null)
+            job.cancel(false);
     }
 
     private void handleInputValues(double inputCompatibility, int inputIterationsCount, int inputCyclesCount) {
@@ -198,116 +233,41 @@ public class GraphVisualiser implements Initializable, Observer {
         }
     }
 
-    private void drawNodesAndEdges(Node[]nodes, Edge[]edges){
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-
-        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
-
-        for (Node node : nodes) {
-            double x = node.getPosition().getX();
-            double y = node.getPosition().getY();
-
-            gc.setFill(Color.BLUE);
-
-            // Ovechkin constant for positioning graph
-            int OK = 3;
-            gc.fillOval(x-OK+OK2, y-OK, 7, 7);
-        }
-
-
-        for (Edge edge : edges) {
-            ArrayList<Double> points = new ArrayList<>();
-
-            for (Node n : edge.getSubdivisionPoints()) {
-                points.add(n.getPosition().getX() + OK2);
-                points.add(n.getPosition().getY());
-            }
-
-            drawEdge(gc, createPath(points));
-        }
+    /**
+     * Draws the latest snapshot of given channel, if the channel belongs to the running algorithm.
+     * Called on the FX thread.
+     *
+     * @param channel
+     */
+    private void drawSnapshot(SnapshotChannel channel) {
+        PolylineSnapshot snapshot = channel.take();
+        if (snapshot == null || channel != snapshotChannel)
+            return;
+
+        renderer.setEdges(snapshot);
+        tiles.invalidate();
+        channel.recycle(snapshot);
+        redraw();
     }
 
-    private void drawEdge(GraphicsContext gc, Path pathList) {
-
-        gc.setStroke(Color.rgb(0, 0, 230, 0.1));
-        gc.setFill(Color.rgb(0, 0, 230, 0.1));
-        gc.setLineWidth(0.7);
-
-        ObservableList<PathElement> l = pathList.getElements();
-
-        gc.beginPath();
-        for (PathElement pe : l) {
-            if (pe.getClass() == MoveTo.class) {
-                gc.moveTo(((MoveTo) pe).getX(), ((MoveTo) pe).getY());
-            } else if (pe.getClass() == LineTo.class) {
-                gc.lineTo(((LineTo) pe).getX(), ((LineTo) pe).getY());
-            }
-        }
-        gc.stroke();
-        gc.closePath();
-    }
-
-    private Path createPath(ArrayList<Double> points) {
-        Path path = new Path();
-        for (int i = 0; i < points.size() - 4; i += 4) {
-            double startX = points.get(i);
-            double startY = points.get(i + 1);
-            double endX = points.get(i + 2);
-            double endY = points.get(i + 3);
-
-            if (i == 0) {
-                MoveTo moveTo = new MoveTo(startX, startY);
-                moveTo.setAbsolute(true);
-                path.getElements().add(moveTo);
-            } else {
-
-                double lastStartX = points.get(i - 4);
-                double lastStartY = points.get(i - 3);
-                double lastEndX = points.get(i - 2);
-                double lastEndY = points.get(i - 1);
-
-                double lastLength = Math.sqrt((lastEndX - lastStartX) * (lastEndX - lastStartX)
-                        + (lastEndY - lastStartY) * (lastEndY - lastStartY));
-                double length = Math.sqrt((endX - startX) * (endX - startX)
-                        + (endY - startY) * (endY - startY));
-                double aveLength = (lastLength + length) / 2;
-
-                double control1X = lastEndX + (lastEndX - lastStartX) * aveLength / lastLength;
-                double control1Y = lastEndY + (lastEndY - lastStartY) * aveLength / lastLength;
-
-                double control2X = startX - (endX - startX) * aveLength / length;
-                double control2Y = startY - (endY - startY) * aveLength / length;
-
-                CubicCurveTo cct = new CubicCurveTo(control1X, control1Y, control2X, control2Y, startX, startY);
-                cct.setAbsolute(true);
-                path.getElements().add(cct);
-
-            }
-            LineTo lineTo = new LineTo(endX, endY);
-            lineTo.setAbsolute(true);
-            path.getElements().add(lineTo);
-
-        }
-
-        return path;
+    private void redraw() {
+        // intermediate results are replaced several times per second, rasterising them into tiles would not pay off
+        if (snapshotChannel != null)
+            renderer.draw(canvas.getGraphicsContext2D(), viewport.getOriginX(), viewport.getOriginY(),
+                    viewport.getScale(), canvas.getWidth(), canvas.getHeight());
+        else
+            tiles.draw(canvas.getGraphicsContext2D(), viewport, canvas.getWidth(), canvas.getHeight());
     }
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        textFields = new ArrayList<>();
-        textFields.add(compatibilityTextField);
-        textFields.add(stepSizeTextField);
-        textFields.add(iterationsCountTextField);
-        textFields.add(cyclesCountTextField);
-        textFields.add(edgeStiffnessTextField);
         readTextField(compatibilityTextField);
         readTextField(stepSizeTextField);
         readTextField(iterationsCountTextField);
         readTextField(cyclesCountTextField);
         readTextField(edgeStiffnessTextField);
         handleMouseScrolling(canvas);
-        canvasScaleX = 1.0;
-        canvasScaleY = 1.0;
+        handleMouseDragging(canvas);
     }
 
 
@@ -331,23 +291,75 @@ public class GraphVisualiser implements Initializable, Observer {
         }));
     }
 
-    @Override
-    public void updateProcessInfo(int iteration, int cycle) {
-        Platform.runLater(() -> {
-            visualiseButton.setText(String.format("Processing...\nCycle: %d\nIteration: %d", cycle, iteration));
-        });
+    /**
+     * Resets controls after the current run finished or was cancelled
+     */
+    private void runFinished() {
+        // ignore snapshots still pending
+        snapshotChannel = null;
+        job = null;
+        visualiseButton.setText("Visualise");
+        cancelButton.setDisable(true);
     }
 
-    @Override
-    public void finished(Node[]nodes, Edge[]edges) {
-        Platform.runLater(() -> {
-            visualiseButton.setText("Visualise");
-            visualiseButton.setDisable(false);
-            for(TextField field : textFields){
-                field.setDisable(false);
+    /**
+     * Observer of one run, which ignores the run once another run has pre-empted it
+     */
+    private class RunObserver implements Observer {
+
+        private final SnapshotChannel channel;
+        // latest progress text not yet shown, progress is shown at most once per pulse of the FX thread
+        private final AtomicReference<String> pendingProgress = new AtomicReference<>();
+
+        RunObserver(SnapshotChannel channel) {
+            this.channel = channel;
+        }
+
+        // called on the FX thread only
+        private boolean isCurrent() {
+            return channel == snapshotChannel;
+        }
+
+        @Override
+        public void updateProcessInfo(int iteration, int cycle) {
+            String progress = String.format("Processing...\nCycle: %d\nIteration: %d", cycle, iteration);
+            // schedule update only if the previous one has been shown, it will show the latest progress
+            if (pendingProgress.getAndSet(progress) == null) {
+                Platform.runLater(() -> {
+                    String text = pendingProgress.getAndSet(null);
+                    if (isCurrent())
+                        visualiseButton.setText(text);
+                });
             }
-            drawNodesAndEdges(nodes, edges);
-        });
+        }
 
+        @Override
+        public void finished(Node[] nodes, Edge[] edges) {
+            Platform.runLater(() -> {
+                if (!isCurrent())
+                    return;
+
+                runFinished();
+                renderer.setNodes(nodes);
+                renderer.setEdges(edges);
+                tiles.invalidate();
+                redraw();
+            });
+        }
+
+        @Override
+        public void cancelled(String reason) {
+            Platform.runLater(() -> {
+                if (!isCurrent())
+                    return;
+
+                // cancelled by the user, or timed out
+                boolean timedOut = !job.isCancelled();
+                runFinished();
+                redraw();
+                if (timedOut)
+                    new Alert(Alert.AlertType.WARNING, reason).show();
+            });
+        }
     }
-}
\ No newline at end of file
+}
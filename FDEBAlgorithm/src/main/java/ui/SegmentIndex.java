@@ -0,0 +1,187 @@
+package ui;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over bounding boxes of segments between consecutive subdivision points of edges, used to find edges
+ * visible in a rectangle without testing all of them.
+ *
+ * Edges of cell {@code c} are {@code cellEdges[cellOffsets[c]]} to {@code cellEdges[cellOffsets[c + 1] - 1]},
+ * each edge listed once per cell overlapped by a bounding box of any of its segments. Arrays only grow, so
+ * rebuilding the index for results of the same size allocates nothing.
+ */
+class SegmentIndex {
+
+    // average number of segments per cell
+    private static final int SEGMENTS_PER_CELL = 16;
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    private double minX;
+    private double minY;
+    private double cellSize;
+    private int columns;
+    private int rows;
+
+    private int[] cellOffsets = new int[1];
+    private int[] cellEdges = new int[0];
+    // last edge listed in each cell while building
+    private int[] lastEdges = new int[0];
+
+    // result of the last query, edges of the result are marked by the current stamp
+    private int[] result = new int[0];
+    private int[] marks = new int[0];
+    private int stamp;
+
+    /**
+     * Builds index over edges whose points are {@code x[offsets[e]]} to {@code x[offsets[e + 1] - 1]}
+     *
+     * @param x
+     * @param y
+     * @param offsets
+     * @param edgesCount
+     */
+    void build(double[] x, double[] y, int[] offsets, int edgesCount) {
+        final int pointsCount = offsets[edgesCount];
+        if (result.length < edgesCount) {
+            result = new int[edgesCount];
+            marks = new int[edgesCount];
+            stamp = 0;
+        }
+
+        if (pointsCount == 0) {
+            columns = 0;
+            rows = 0;
+            cellOffsets[0] = 0;
+            return;
+        }
+
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < pointsCount; p++) {
+            minX = Math.min(minX, x[p]);
+            minY = Math.min(minY, y[p]);
+            maxX = Math.max(maxX, x[p]);
+            maxY = Math.max(maxY, y[p]);
+        }
+
+        // square cells, about SEGMENTS_PER_CELL segments per cell if segments were spread evenly
+        final double width = Math.max(maxX - minX, Double.MIN_NORMAL);
+        final double height = Math.max(maxY - minY, Double.MIN_NORMAL);
+        final int cellsCount = Math.max(1, (pointsCount - edgesCount) / SEGMENTS_PER_CELL);
+        cellSize = Math.max(Math.sqrt(width * height / cellsCount), Math.max(width, height) / MAX_CELLS_PER_AXIS);
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+
+        final int cells = columns * rows;
+        if (cellOffsets.length < cells + 1) {
+            cellOffsets = new int[cells + 1];
+            lastEdges = new int[cells];
+        }
+
+        // count edges of each cell, then fill them in
+        Arrays.fill(cellOffsets, 0, cells + 1, 0);
+        Arrays.fill(lastEdges, 0, cells, -1);
+        for (int e = 0; e < edgesCount; e++) {
+            for (int p = offsets[e] + 1; p < offsets[e + 1]; p++) {
+                final int fromColumn = column(Math.min(x[p - 1], x[p]));
+                final int toColumn = column(Math.max(x[p - 1], x[p]));
+                final int fromRow = row(Math.min(y[p - 1], y[p]));
+                final int toRow = row(Math.max(y[p - 1], y[p]));
+                for (int r = fromRow; r <= toRow; r++) {
+                    for (int c = fromColumn; c <= toColumn; c++) {
+                        final int cell = r * columns + c;
+                        if (lastEdges[cell] != e) {
+                            lastEdges[cell] = e;
+                            cellOffsets[cell + 1]++;
+                        }
+                    }
+                }
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellOffsets[cell + 1] += cellOffsets[cell];
+        }
+
+        if (cellEdges.length < cellOffsets[cells])
+            cellEdges = new int[cellOffsets[cells]];
+        Arrays.fill(lastEdges, 0, cells, -1);
+        for (int e = 0; e < edgesCount; e++) {
+            for (int p = offsets[e] + 1; p < offsets[e + 1]; p++) {
+                final int fromColumn = column(Math.min(x[p - 1], x[p]));
+                final int toColumn = column(Math.max(x[p - 1], x[p]));
+                final int fromRow = row(Math.min(y[p - 1], y[p]));
+                final int toRow = row(Math.max(y[p - 1], y[p]));
+                for (int r = fromRow; r <= toRow; r++) {
+                    for (int c = fromColumn; c <= toColumn; c++) {
+                        final int cell = r * columns + c;
+                        if (lastEdges[cell] != e) {
+                            lastEdges[cell] = e;
+                            // offsets of cells are shifted by one while filling and restored below
+                            cellEdges[cellOffsets[cell]++] = e;
+                        }
+                    }
+                }
+            }
+        }
+        for (int cell = cells; cell > 0; cell--) {
+            cellOffsets[cell] = cellOffsets[cell - 1];
+        }
+        cellOffsets[0] = 0;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+    /**
+     * Finds edges having a segment whose bounding box may overlap given rectangle, the edges are stored
+     * in {@link #getResult()}. Edges are found by cells, so some of them may lie slightly outside the rectangle.
+     *
+     * @param fromX
+     * @param fromY
+     * @param toX
+     * @param toY
+     * @return number of found edges
+     */
+    int query(double fromX, double fromY, double toX, double toY) {
+        if (columns == 0 || toX < minX || toY < minY
+                || fromX > minX + columns * cellSize || fromY > minY + rows * cellSize)
+            return 0;
+
+        if (++stamp == 0) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+
+        int count = 0;
+        final int toColumn = column(toX);
+        final int toRow = row(toY);
+        for (int r = row(fromY); r <= toRow; r++) {
+            for (int c = column(fromX); c <= toColumn; c++) {
+                final int cell = r * columns + c;
+                for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++) {
+                    final int e = cellEdges[i];
+                    if (marks[e] != stamp) {
+                        marks[e] = stamp;
+                        result[count++] = e;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns edges found by the last query
+     * @return
+     */
+    int[] getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+package ui;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rasterised square tiles of the graph drawn by {@link EdgeRenderer}, cached by zoom level and position.
+ *
+ * At zoom level with scale s, tile (i, j) shows graph rectangle starting at (i * TILE_SIZE / s, j * TILE_SIZE / s)
+ * of size TILE_SIZE / s. Panning and zooming back therefore only render tiles which have not been visible before.
+ * When the cache holds more than its capacity, least recently drawn tiles are evicted and their images reused for
+ * new tiles. Not thread-safe, used on the FX thread only.
+ */
+class TileCache {
+
+    static final int TILE_SIZE = 256;
+
+    private final EdgeRenderer renderer;
+    private final int capacity;
+
+    // tiles are rendered on this canvas and copied into images
+    private final Canvas canvas = new Canvas(TILE_SIZE, TILE_SIZE);
+    private final SnapshotParameters parameters = new SnapshotParameters();
+
+    private final LinkedHashMap<Long, WritableImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    // images of evicted tiles
+    private final ArrayDeque<WritableImage> freeImages = new ArrayDeque<>();
+
+    /**
+     * @param renderer
+     * @param capacity maximal number of cached tiles, each taking TILE_SIZE^2 * 4 bytes
+     */
+    TileCache(EdgeRenderer renderer, int capacity) {
+        this.renderer = renderer;
+        this.capacity = capacity;
+        parameters.setFill(Color.TRANSPARENT);
+    }
+
+    /**
+     * Drops all tiles, has to be called whenever nodes or edges of the renderer change
+     */
+    void invalidate() {
+        freeImages.addAll(tiles.values());
+        tiles.clear();
+    }
+
+    /**
+     * Clears given canvas and draws tiles visible in given viewport, rendering those which are not cached
+     *
+     * @param gc
+     * @param viewport
+     * @param width width of the canvas
+     * @param height height of the canvas
+     */
+    void draw(GraphicsContext gc, Viewport viewport, double width, double height) {
+        gc.clearRect(0, 0, width, height);
+
+        // position of the viewport in pixels of its zoom level, rounded so that tiles are not resampled
+        final double scale = viewport.getScale();
+        final double left = Math.floor(viewport.getOriginX() * scale);
+        final double top = Math.floor(viewport.getOriginY() * scale);
+
+        final int fromColumn = (int) Math.floor(left / TILE_SIZE);
+        final int toColumn = (int) Math.floor((left + width) / TILE_SIZE);
+        final int fromRow = (int) Math.floor(top / TILE_SIZE);
+        final int toRow = (int) Math.floor((top + height) / TILE_SIZE);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                WritableImage tile = getTile(viewport.getLevel(), scale, column, row);
+                gc.drawImage(tile, column * TILE_SIZE - left, row * TILE_SIZE - top);
+            }
+        }
+    }
+
+    private static long key(int level, int column, int row) {
+        return ((long) (level & 0xFF) << 48) | ((long) (column & 0xFFFFFF) << 24) | (row & 0xFFFFFF);
+    }
+
+    private WritableImage getTile(int level, double scale, int column, int row) {
+        final long key = key(level, column, row);
+        WritableImage tile = tiles.get(key);
+        if (tile != null)
+            return tile;
+
+        renderer.draw(canvas.getGraphicsContext2D(), (double) column * TILE_SIZE / scale,
+                (double) row * TILE_SIZE / scale, scale, TILE_SIZE, TILE_SIZE);
+        tile = canvas.snapshot(parameters, freeImages.poll());
+        tiles.put(key, tile);
+
+        if (tiles.size() > capacity) {
+            Iterator<Map.Entry<Long, WritableImage>> eldest = tiles.entrySet().iterator();
+            freeImages.add(eldest.next().getValue());
+            eldest.remove();
+        }
+        return tile;
+    }
+}
@@ -0,0 +1,79 @@
+package ui;
+
+/**
+ * Visible part of the graph. Graph coordinates are mapped onto the canvas as
+ * x_canvas = (x - originX) * scale, y_canvas = (y - originY) * scale, where scale = ZOOM_FACTOR^level
+ * Zoom levels are discrete, so that tiles rasterised at a level can be reused while panning and after zooming back.
+ */
+class Viewport {
+
+    static final double ZOOM_FACTOR = 1.1;
+    // scale about 0.51, zooming further away only shrinks the graph
+    static final int MIN_LEVEL = -7;
+    // scale about 45, subdivision points are a few pixels apart at most zoom levels below
+    static final int MAX_LEVEL = 40;
+
+    private int level;
+    private double scale = 1;
+    private double originX;
+    private double originY;
+
+    /**
+     * @param originX graph coordinate shown at the left border of the canvas
+     * @param originY graph coordinate shown at the top border of the canvas
+     */
+    Viewport(double originX, double originY) {
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    /**
+     * Zooms by given number of levels, keeping graph point under given canvas point in place
+     *
+     * @param levels positive to zoom in, negative to zoom out
+     * @param pivotX
+     * @param pivotY
+     * @return false if the zoom is already at its limit
+     */
+    boolean zoom(int levels, double pivotX, double pivotY) {
+        final int newLevel = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level + levels));
+        if (newLevel == level)
+            return false;
+
+        final double x = originX + pivotX / scale;
+        final double y = originY + pivotY / scale;
+        level = newLevel;
+        // computed from the level, so that scale does not drift during long zoom sessions
+        scale = Math.pow(ZOOM_FACTOR, level);
+        originX = x - pivotX / scale;
+        originY = y - pivotY / scale;
+        return true;
+    }
+
+    /**
+     * Moves the visible part by given distance in canvas pixels
+     *
+     * @param dx
+     * @param dy
+     */
+    void pan(double dx, double dy) {
+        originX -= dx / scale;
+        originY -= dy / scale;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    double getScale() {
+        return scale;
+    }
+
+    double getOriginX() {
+        return originX;
+    }
+
+    double getOriginY() {
+        return originY;
+    }
+}
@@ -0,0 +1,190 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Records phases of the bundling pipeline as Java Flight Recorder events in category "FDEB". Events are created only
+ * if their type is enabled in the running recording, so there is no cost without one.
+ */
+class FlightRecorderEvents implements BundlingEvents {
+
+    @Name("fdeb.Parse")
+    @Label("Parse")
+    @Category("FDEB")
+    @StackTrace(false)
+    static class ParseEvent extends Event {
+        @Label("File")
+        String file;
+        @Label("Nodes")
+        int nodesCount;
+        @Label("Edges")
+        int edgesCount;
+    }
+
+    @Name("fdeb.Projection")
+    @Label("Projection")
+    @Category("FDEB")
+    @StackTrace(false)
+    static class ProjectionEvent extends Event {
+        @Label("Nodes")
+        int nodesCount;
+    }
+
+    @Name("fdeb.Compatibility")
+    @Label("Compatibility")
+    @Category("FDEB")
+    @StackTrace(false)
+    static class CompatibilityEvent extends Event {
+        @Label("Edges")
+        int edgesCount;
+        @Label("Compatible Pairs")
+        long pairsCount;
+    }
+
+    @Name("fdeb.Cycle")
+    @Label("Cycle")
+    @Category("FDEB")
+    @StackTrace(false)
+    static class CycleEvent extends Event {
+        @Label("Cycle")
+        int cycle;
+        @Label("Iterations")
+        int iterationsCount;
+        @Label("Subdivision Points")
+        int subdivisionPointsCount;
+    }
+
+    @Name("fdeb.Iteration")
+    @Label("Iteration")
+    @Category("FDEB")
+    @StackTrace(false)
+    static class IterationEvent extends Event {
+        @Label("Cycle")
+        int cycle;
+        @Label("Iteration")
+        int iteration;
+        @Label("Force Evaluations")
+        long forceEvaluationsCount;
+        @Label("Max Displacement")
+        double maxDisplacement;
+        @Label("Mean Displacement")
+        double meanDisplacement;
+    }
+
+    @Name("fdeb.Resampling")
+    @Label("Resampling")
+    @Category("FDEB")
+    @StackTrace(false)
+    static class ResamplingEvent extends Event {
+        @Label("Subdivision Points")
+        int subdivisionPointsCount;
+        @Label("Points")
+        long pointsCount;
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    private static final ParseEvent PARSE = new ParseEvent();
+    private static final ProjectionEvent PROJECTION = new ProjectionEvent();
+    private static final CompatibilityEvent COMPATIBILITY = new CompatibilityEvent();
+    private static final CycleEvent CYCLE = new CycleEvent();
+    private static final IterationEvent ITERATION = new IterationEvent();
+    private static final ResamplingEvent RESAMPLING = new ResamplingEvent();
+
+    @Override
+    public Object begin(Phase phase) {
+        final Event event;
+        switch (phase) {
+            case PARSE:
+                event = PARSE.isEnabled() ? new ParseEvent() : null;
+                break;
+            case PROJECTION:
+                event = PROJECTION.isEnabled() ? new ProjectionEvent() : null;
+                break;
+            case COMPATIBILITY:
+                event = COMPATIBILITY.isEnabled() ? new CompatibilityEvent() : null;
+                break;
+            case CYCLE:
+                event = CYCLE.isEnabled() ? new CycleEvent() : null;
+                break;
+            case ITERATION:
+                event = ITERATION.isEnabled() ? new IterationEvent() : null;
+                break;
+            case RESAMPLING:
+                event = RESAMPLING.isEnabled() ? new ResamplingEvent() : null;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown phase: " + phase);
+        }
+        if (event != null)
+            event.begin();
+        return event;
+    }
+
+    @Override
+    public void endParse(Object event, String file, int nodesCount, int edgesCount) {
+        if (event instanceof ParseEvent parse && parse.shouldCommit()) {
+            parse.file = file;
+            parse.nodesCount = nodesCount;
+            parse.edgesCount = edgesCount;
+            parse.commit();
+        }
+    }
+
+    @Override
+    public void endProjection(Object event, int nodesCount) {
+        if (event instanceof ProjectionEvent projection && projection.shouldCommit()) {
+            projection.nodesCount = nodesCount;
+            projection.commit();
+        }
+    }
+
+    @Override
+    public void endCompatibility(Object event, int edgesCount, long pairsCount) {
+        if (event instanceof CompatibilityEvent compatibility && compatibility.shouldCommit()) {
+            compatibility.edgesCount = edgesCount;
+            compatibility.pairsCount = pairsCount;
+            compatibility.commit();
+        }
+    }
+
+    @Override
+    public void endCycle(Object event, int cycle, int iterationsCount, int subdivisionPointsCount) {
+        if (event instanceof CycleEvent cycleEvent && cycleEvent.shouldCommit()) {
+            cycleEvent.cycle = cycle;
+            cycleEvent.iterationsCount = iterationsCount;
+            cycleEvent.subdivisionPointsCount = subdivisionPointsCount;
+            cycleEvent.commit();
+        }
+    }
+
+    @Override
+    public void endIteration(Object event, int cycle, int iteration, long forceEvaluationsCount,
+                             double maxDisplacement, double meanDisplacement) {
+        if (event instanceof IterationEvent iterationEvent && iterationEvent.shouldCommit()) {
+            iterationEvent.cycle = cycle;
+            iterationEvent.iteration = iteration;
+            iterationEvent.forceEvaluationsCount = forceEvaluationsCount;
+            iterationEvent.maxDisplacement = maxDisplacement;
+            iterationEvent.meanDisplacement = meanDisplacement;
+            iterationEvent.commit();
+        }
+    }
+
+    @Override
+    public void endResampling(Object event, int subdivisionPointsCount, long pointsCount) {
+        if (event instanceof ResamplingEvent resampling && resampling.shouldCommit()) {
+            resampling.subdivisionPointsCount = subdivisionPointsCount;
+            resampling.pointsCount = pointsCount;
+            // current and next positions, both coordinates
+            resampling.size = 32 * pointsCount;
+            resampling.commit();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Electrostatic kernel processing as many compatible edges at once as fit into the preferred vector register.
+ * Positions of corresponding points of compatible edges are gathered, forces of pairs closer than {@link #EPS}
+ * are masked out and the rest is accumulated per lane. Remaining compatible edges are processed one by one.
+ */
+class VectorElectrostaticKernel implements ElectrostaticKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void addForce(double[] pointsX, double[] pointsY, int p, int i, int[] pointOffsets, int from, int to,
+                         double[] force) {
+        final double px = pointsX[p];
+        final double py = pointsY[p];
+
+        DoubleVector sumX = DoubleVector.zero(SPECIES);
+        DoubleVector sumY = DoubleVector.zero(SPECIES);
+
+        int k = from;
+        final int upperBound = from + SPECIES.loopBound(to - from);
+        for (; k < upperBound; k += SPECIES.length()) {
+            DoubleVector forceX = DoubleVector.fromArray(SPECIES, pointsX, i, pointOffsets, k).sub(px);
+            DoubleVector forceY = DoubleVector.fromArray(SPECIES, pointsY, i, pointOffsets, k).sub(py);
+
+            // ignore force between current edge and its compatible edge of its too small
+            VectorMask<Double> interacting = forceX.abs().compare(VectorOperators.GE, EPS)
+                    .and(forceY.abs().compare(VectorOperators.GE, EPS));
+
+            DoubleVector divisor = forceX.mul(forceX).add(forceY.mul(forceY)).sqrt();
+
+            sumX = sumX.add(forceX.div(divisor), interacting);
+            sumY = sumY.add(forceY.div(divisor), interacting);
+        }
+
+        double x = sumX.reduceLanes(VectorOperators.ADD);
+        double y = sumY.reduceLanes(VectorOperators.ADD);
+
+        for (; k < to; k++) {
+            final int q = pointOffsets[k] + i;
+
+            double forceX = pointsX[q] - px;
+            double forceY = pointsY[q] - py;
+
+            if (Math.abs(forceX) < EPS || Math.abs(forceY) < EPS)
+                continue;
+
+            double divisor = Math.sqrt(forceX * forceX + forceY * forceY);
+
+            x += forceX / divisor;
+            y += forceY / divisor;
+        }
+
+        force[0] += x;
+        force[1] += y;
+    }
+}
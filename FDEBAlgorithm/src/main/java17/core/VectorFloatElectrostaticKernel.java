@@ -0,0 +1,74 @@
+package core;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Single precision variant of {@link VectorElectrostaticKernel}, processing up to 8 compatible edges at once.
+ * Positions of corresponding points of compatible edges are gathered, forces of pairs closer than {@link #EPS}
+ * are masked out and the rest is accumulated per lane. Remaining compatible edges, and all compatible edges of an
+ * edge with fewer of them than lanes, are processed one by one.
+ *
+ * Vectors are at most 256 bits wide even if wider ones are preferred: with 16 lanes most edges have too few
+ * compatible edges to fill a vector, and gathers of 16 lanes cost more than they save.
+ */
+class VectorFloatElectrostaticKernel implements FloatElectrostaticKernel {
+
+    private static final VectorSpecies<Float> SPECIES = VectorSpecies.of(float.class,
+            VectorShape.forBitSize(Math.min(256, FloatVector.SPECIES_PREFERRED.vectorBitSize())));
+
+    @Override
+    public void addForce(float[] pointsX, float[] pointsY, int p, int i, int[] pointOffsets, int from, int to,
+                         float[] force) {
+        final float px = pointsX[p];
+        final float py = pointsY[p];
+
+        float x = 0;
+        float y = 0;
+
+        int k = from;
+        if (to - from >= SPECIES.length()) {
+            FloatVector sumX = FloatVector.zero(SPECIES);
+            FloatVector sumY = FloatVector.zero(SPECIES);
+
+            final int upperBound = from + SPECIES.loopBound(to - from);
+            for (; k < upperBound; k += SPECIES.length()) {
+                FloatVector forceX = FloatVector.fromArray(SPECIES, pointsX, i, pointOffsets, k).sub(px);
+                FloatVector forceY = FloatVector.fromArray(SPECIES, pointsY, i, pointOffsets, k).sub(py);
+
+                // ignore force between current edge and its compatible edge of its too small
+                VectorMask<Float> interacting = forceX.abs().compare(VectorOperators.GE, EPS)
+                        .and(forceY.abs().compare(VectorOperators.GE, EPS));
+
+                FloatVector divisor = forceX.mul(forceX).add(forceY.mul(forceY)).sqrt();
+
+                sumX = sumX.add(forceX.div(divisor), interacting);
+                sumY = sumY.add(forceY.div(divisor), interacting);
+            }
+
+            x = sumX.reduceLanes(VectorOperators.ADD);
+            y = sumY.reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; k < to; k++) {
+            final int q = pointOffsets[k] + i;
+
+            float forceX = pointsX[q] - px;
+            float forceY = pointsY[q] - py;
+
+            if (Math.abs(forceX) < EPS || Math.abs(forceY) < EPS)
+                continue;
+
+            float divisor = (float) Math.sqrt(forceX * forceX + forceY * forceY);
+
+            x += forceX / divisor;
+            y += forceY / divisor;
+        }
+
+        force[0] += x;
+        force[1] += y;
+    }
+}
@@ -0,0 +1,155 @@
+package core;
+
+import model.Edge;
+import model.Node;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that iterations on the calling thread allocate nothing once subdivision points are set up, measured by
+ * allocated bytes of the thread.
+ */
+public class IterationAllocationTest {
+
+    private static final String GRAPH = "src/main/resources/airlines.graphml";
+    private static final int SUBDIVISION_POINTS_COUNT = 8;
+    private static final int WARMUP_ITERATIONS_COUNT = 50;
+    private static final int ITERATIONS_COUNT = 50;
+    private static final int CYCLES_COUNT = 4;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long threadID = Thread.currentThread().getId();
+
+    private Node[] nodes;
+    private Edge[] edges;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        IOParser parser = new IOParser(GRAPH);
+        nodes = parser.getNodes();
+        edges = parser.getEdges();
+    }
+
+    @Test
+    public void iterationAllocatesNothing() {
+        assertIterationsAllocateNothing(new ForceDirectedEdgeBundling(nodes, edges));
+    }
+
+    @Test
+    public void symmetricIterationAllocatesNothing() {
+        assertIterationsAllocateNothing(new ForceDirectedEdgeBundling(nodes, edges).setSymmetric(true));
+    }
+
+    @Test
+    public void freezingIterationAllocatesNothing() {
+        assertIterationsAllocateNothing(new ForceDirectedEdgeBundling(nodes, edges).setFreezingTolerance(0.05));
+    }
+
+    @Test
+    public void singlePrecisionIterationAllocatesNothing() {
+        assertIterationsAllocateNothing(new ForceDirectedEdgeBundling(nodes, edges).setSinglePrecision(true));
+    }
+
+    @Test
+    public void runAllocatesNothingPerIteration() {
+        assertRunAllocatesNothingPerIteration(newEngine());
+    }
+
+    @Test
+    public void symmetricRunAllocatesNothingPerIteration() {
+        assertRunAllocatesNothingPerIteration(newEngine().setSymmetric(true));
+    }
+
+    @Test
+    public void freezingRunAllocatesNothingPerIteration() {
+        assertRunAllocatesNothingPerIteration(newEngine().setFreezingTolerance(0.05));
+    }
+
+    @Test
+    public void singlePrecisionRunAllocatesNothingPerIteration() {
+        assertRunAllocatesNothingPerIteration(newEngine().setSinglePrecision(true));
+    }
+
+    private ForceDirectedEdgeBundling newEngine() {
+        return new ForceDirectedEdgeBundling(nodes, edges, Configuration.DEFAULT_STEP_SIZE,
+                Configuration.DEFAULT_COMPATIBILITY_THRESHOLD, Configuration.DEFAULT_EDGE_STIFFNESS,
+                Configuration.DEFAULT_ITERATIONS_COUNT, CYCLES_COUNT).setParallelism(1);
+    }
+
+    /**
+     * Prepares subdivision points as the algorithm does before a cycle, warms up iterations and then checks that
+     * further iterations allocate nothing
+     *
+     * @param fdeb
+     */
+    private void assertIterationsAllocateNothing(ForceDirectedEdgeBundling fdeb) {
+        fdeb.updateEdgeSubdivisions(Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT);
+        fdeb.calculateCompatibilities();
+        for (int count = Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT * Configuration.DEFAULT_SUBDIVISION_POINTS_RATE;
+             count <= SUBDIVISION_POINTS_COUNT; count *= Configuration.DEFAULT_SUBDIVISION_POINTS_RATE) {
+            fdeb.updateEdgeSubdivisions(count);
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS_COUNT; i++) {
+            fdeb.iterate(null, SUBDIVISION_POINTS_COUNT, Configuration.DEFAULT_STEP_SIZE);
+        }
+
+        final long allocatedBytes = threads.getThreadAllocatedBytes(threadID);
+        for (int i = 0; i < ITERATIONS_COUNT; i++) {
+            fdeb.iterate(null, SUBDIVISION_POINTS_COUNT, Configuration.DEFAULT_STEP_SIZE);
+        }
+        assertEquals(0, threads.getThreadAllocatedBytes(threadID) - allocatedBytes);
+    }
+
+    /**
+     * Runs the algorithm and checks that the whole loop body of each iteration allocates nothing, measured from
+     * notification of one iteration to notification of the next one in the same cycle. The first iteration of
+     * each cycle is skipped, it may grow buffers after resampling.
+     *
+     * @param fdeb
+     */
+    private void assertRunAllocatesNothingPerIteration(ForceDirectedEdgeBundling fdeb) {
+        final AllocationObserver observer = new AllocationObserver();
+        fdeb.registerObserver(observer);
+        fdeb.run();
+
+        assertTrue(observer.measuredIterationsCount > 0);
+        assertEquals(0, observer.maxAllocatedBytes);
+    }
+
+    private class AllocationObserver implements Observer {
+
+        private int cycle = -1;
+        private int iteration = -1;
+        private long allocatedBytes;
+        private long maxAllocatedBytes;
+        private int measuredIterationsCount;
+
+        @Override
+        public void updateProcessInfo(int iteration, int cycle) {
+            final long allocatedBytes = threads.getThreadAllocatedBytes(threadID);
+            if(cycle == this.cycle && this.iteration >= 1 && iteration == this.iteration + 1) {
+                maxAllocatedBytes = Math.max(maxAllocatedBytes, allocatedBytes - this.allocatedBytes);
+                measuredIterationsCount++;
+            }
+            this.cycle = cycle;
+            this.iteration = iteration;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public void finished(Node[] nodes, Edge[] edges) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package core;
+
+import model.Edge;
+import model.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Graphs used by benchmarks, selected by name:
+ * 'airlines' and 'migrations' - datasets from FDEBAlgorithm resources, directory can be changed by property fdeb.data
+ * 'synthetic-N' - random graph with N edges, seeded so that each run gets the same graph
+ */
+final class BenchmarkGraphs {
+
+    static final String DATA_DIRECTORY = System.getProperty("fdeb.data", "../FDEBAlgorithm/src/main/resources");
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    // canvas area used by IOParser
+    private static final double MIN_X = 100, MAX_X = 1050;
+    private static final double MIN_Y = 50, MAX_Y = 610;
+
+    // fraction of nodes acting as hubs and probability that an edge leads to a hub
+    private static final double HUBS_FRACTION = 0.1;
+    private static final double HUB_EDGE_PROBABILITY = 0.7;
+
+    private BenchmarkGraphs() throws IllegalAccessException {
+        throw new IllegalAccessException("Trying to initialize benchmark graphs class...");
+    }
+
+    static class Graph {
+        final Node[] nodes;
+        final Edge[] edges;
+
+        Graph(Node[] nodes, Edge[] edges) {
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+    }
+
+    /**
+     * Returns path to the dataset of given name
+     *
+     * @param name 'airlines' or 'migrations'
+     * @return
+     */
+    static String datasetPath(String name) {
+        switch (name) {
+            case "airlines":
+                return new File(DATA_DIRECTORY, "airlines.graphml").getPath();
+            case "migrations":
+                return new File(DATA_DIRECTORY, "migrations.xml").getPath();
+            default:
+                throw new IllegalArgumentException("Unknown dataset: " + name);
+        }
+    }
+
+    static Graph load(String name) throws IOException {
+        if (name.startsWith(SYNTHETIC_PREFIX))
+            return synthetic(Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length())));
+
+        IOParser parser = new IOParser(datasetPath(name));
+        return new Graph(parser.getNodes(), parser.getEdges());
+    }
+
+    /**
+     * Generates graph with given number of edges spread over the canvas, with about 8 edges per node.
+     * Most edges lead to one of a few hub nodes, similarly to airline routes.
+     *
+     * @param edgesCount
+     * @return
+     */
+    static Graph synthetic(int edgesCount) {
+        Random random = new Random(edgesCount);
+
+        Node[] nodes = new Node[Math.max(2, edgesCount / 8)];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(MIN_X + random.nextDouble() * (MAX_X - MIN_X),
+                    MIN_Y + random.nextDouble() * (MAX_Y - MIN_Y), i, "N" + i);
+        }
+
+        final int hubsCount = Math.max(1, (int) (nodes.length * HUBS_FRACTION));
+        Edge[] edges = new Edge[edgesCount];
+        for (int i = 0; i < edgesCount; i++) {
+            int from = random.nextInt(nodes.length);
+            int to;
+            do {
+                to = random.nextDouble() < HUB_EDGE_PROBABILITY ? random.nextInt(hubsCount) : random.nextInt(nodes.length);
+            } while (to == from);
+            edges[i] = new Edge(nodes[from], nodes[to], i);
+        }
+
+        return new Graph(nodes, edges);
+    }
+}
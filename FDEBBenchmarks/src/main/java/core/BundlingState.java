@@ -0,0 +1,35 @@
+package core;
+
+import model.Edge;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Common setup of bundling benchmarks: loads graph and creates engine with given compatibility threshold and
+ * default values of other parameters.
+ */
+final class BundlingState {
+
+    private BundlingState() throws IllegalAccessException {
+        throw new IllegalAccessException("Trying to initialize bundling state class...");
+    }
+
+    static ForceDirectedEdgeBundling createEngine(String graph, double compatibility) throws IOException {
+        // per-iteration logging of the engine would dominate measured times
+        Logger.getLogger(ForceDirectedEdgeBundling.class.getName()).setLevel(Level.WARNING);
+
+        BenchmarkGraphs.Graph loaded = BenchmarkGraphs.load(graph);
+        for (Edge edge : loaded.edges) {
+            edge.getSubdivisionPoints().clear();
+        }
+
+        return new ForceDirectedEdgeBundling(loaded.nodes, loaded.edges,
+                Configuration.DEFAULT_STEP_SIZE,
+                compatibility,
+                Configuration.DEFAULT_EDGE_STIFFNESS,
+                Configuration.DEFAULT_ITERATIONS_COUNT,
+                Configuration.DEFAULT_CYCLES_COUNT);
+    }
+}
@@ -0,0 +1,68 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Export of bundled airlines dataset into a temporary file by {@link ResultExporter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+
+    @Param({"JSON", "GEOJSON", "FLOAT32"})
+    public ResultExporter.Format format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private IOParser parser;
+    private SubdivisionBuffer subdivisionPoints;
+    private ResultExporter exporter;
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.getLogger(ForceDirectedEdgeBundling.class.getName()).setLevel(java.util.logging.Level.WARNING);
+
+        parser = new IOParser(BenchmarkGraphs.datasetPath("airlines"));
+        ForceDirectedEdgeBundling fdeb = new ForceDirectedEdgeBundling(parser.getNodes(), parser.getEdges());
+        fdeb.run();
+        subdivisionPoints = fdeb.getSubdivisionPoints();
+
+        exporter = parser.createExporter(format).setGzip(gzip);
+        path = Files.createTempFile("export", format.getExtension());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public Path export() throws IOException {
+        exporter.export(path, parser.getEdges(), subdivisionPoints);
+        return path;
+    }
+}
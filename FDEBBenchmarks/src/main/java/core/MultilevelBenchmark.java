@@ -0,0 +1,58 @@
+package core;
+
+import model.Edge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Complete run of {@link MultilevelEdgeBundling} with default parameters, for comparison with {@link RunBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MultilevelBenchmark {
+
+    @Param({"synthetic-20000", "synthetic-100000"})
+    public String graph;
+
+    @Param({"1"})
+    public int threads;
+
+    private MultilevelEdgeBundling fdeb;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        // per-iteration logging of the engines would dominate measured times
+        Logger.getLogger(ForceDirectedEdgeBundling.class.getName()).setLevel(java.util.logging.Level.WARNING);
+        Logger.getLogger(MultilevelEdgeBundling.class.getName()).setLevel(java.util.logging.Level.WARNING);
+
+        BenchmarkGraphs.Graph loaded = BenchmarkGraphs.load(graph);
+        for (Edge edge : loaded.edges) {
+            edge.getSubdivisionPoints().clear();
+        }
+        fdeb = new MultilevelEdgeBundling(loaded.nodes, loaded.edges).setParallelism(threads);
+    }
+
+    @Benchmark
+    public SubdivisionBuffer run() {
+        fdeb.run();
+        return fdeb.getSubdivisionPoints();
+    }
+}
@@ -0,0 +1,153 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single phases of {@link ForceDirectedEdgeBundling}: compatibility calculation, one force iteration and
+ * update of subdivision points to twice as many, at given number of subdivision points per edge.
+ * Each phase has its own engine, so parameters of one phase do not multiply runs of the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+    @Param({"airlines", "synthetic-10000"})
+    public String graph;
+
+    @Param({"0.6", "0.3"})
+    public double compatibility;
+
+    @Param({"1", "4", "16", "64"})
+    public int subdivisionPoints;
+
+    @Param({"1"})
+    public int threads;
+
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Creates engine with edges prepared in the same way as the algorithm does before the cycle with given number of
+     * points
+     *
+     * @param singlePrecision
+     * @return
+     * @throws IOException
+     */
+    ForceDirectedEdgeBundling prepareEngine(boolean singlePrecision) throws IOException {
+        ForceDirectedEdgeBundling fdeb = BundlingState.createEngine(graph, compatibility)
+                .setSinglePrecision(singlePrecision);
+
+        fdeb.updateEdgeSubdivisions(Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT);
+        fdeb.calculateCompatibilities();
+        for (int count = Configuration.DEFAULT_SUBDIVISION_POINTS_COUNT * Configuration.DEFAULT_SUBDIVISION_POINTS_RATE;
+             count <= subdivisionPoints; count *= Configuration.DEFAULT_SUBDIVISION_POINTS_RATE) {
+            fdeb.updateEdgeSubdivisions(count);
+        }
+        return fdeb;
+    }
+
+    @State(Scope.Benchmark)
+    public static class CompatibilityState {
+
+        ForceDirectedEdgeBundling fdeb;
+
+        @Setup(Level.Trial)
+        public void setUp(PhaseBenchmark benchmark) throws IOException {
+            fdeb = benchmark.prepareEngine(false);
+        }
+    }
+
+    /**
+     * Engine of {@link #iteration(IterationState)}, the only phase affected by precision of subdivision points and
+     * by the electrostatic kernel. The vectorized kernel needs Java 17+ with {@code --add-modules
+     * jdk.incubator.vector}, otherwise the scalar one is used.
+     */
+    @State(Scope.Benchmark)
+    public static class IterationState {
+
+        @Param({"false", "true"})
+        public boolean singlePrecision;
+
+        @Param({"false"})
+        public boolean vectorized;
+
+        ForceDirectedEdgeBundling fdeb;
+
+        @Setup(Level.Trial)
+        public void setUp(PhaseBenchmark benchmark) throws IOException {
+            fdeb = benchmark.prepareEngine(singlePrecision).setVectorized(vectorized);
+        }
+    }
+
+    /**
+     * Engine of {@link #updateEdgeSubdivisions(SubdivisionState)}, whose subdivision points are set back to the
+     * benchmarked number before each invocation
+     */
+    @State(Scope.Benchmark)
+    public static class SubdivisionState {
+
+        ForceDirectedEdgeBundling fdeb;
+        int subdivisionPoints;
+
+        @Setup(Level.Trial)
+        public void setUp(PhaseBenchmark benchmark) throws IOException {
+            fdeb = benchmark.prepareEngine(false);
+            subdivisionPoints = benchmark.subdivisionPoints;
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            fdeb.updateEdgeSubdivisions(subdivisionPoints);
+        }
+    }
+
+    @Benchmark
+    public CompatibilityGraph calculateCompatibilities(CompatibilityState state) {
+        state.fdeb.calculateCompatibilities();
+        return state.fdeb.getCompatibilityGraph();
+    }
+
+    @Benchmark
+    public SubdivisionBuffer iteration(IterationState state) {
+        state.fdeb.iterate(pool, state.fdeb.getSubdivisionPoints().getSubdivisionPointsCount(),
+                Configuration.DEFAULT_STEP_SIZE);
+        return state.fdeb.getSubdivisionPoints();
+    }
+
+    @Benchmark
+    public SubdivisionBuffer updateEdgeSubdivisions(SubdivisionState state) {
+        state.fdeb.updateEdgeSubdivisions(state.subdivisionPoints * Configuration.DEFAULT_SUBDIVISION_POINTS_RATE);
+        return state.fdeb.getSubdivisionPoints();
+    }
+}
@@ -0,0 +1,51 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete run of {@link ForceDirectedEdgeBundling} with default parameters, except compatibility threshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RunBenchmark {
+
+    @Param({"airlines", "synthetic-5000"})
+    public String graph;
+
+    @Param({"0.6", "0.3"})
+    public double compatibility;
+
+    @Param({"1"})
+    public int threads;
+
+    private ForceDirectedEdgeBundling fdeb;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        fdeb = BundlingState.createEngine(graph, compatibility).setParallelism(threads);
+    }
+
+    @Benchmark
+    public SubdivisionBuffer run() {
+        fdeb.run();
+        return fdeb.getSubdivisionPoints();
+    }
+}